@@ -1,60 +1,121 @@
 package artcreator.creator;
 
 import artcreator.creator.impl.CreatorImpl;
+import artcreator.creator.impl.Jobs;
 import artcreator.creator.port.Creator;
 import artcreator.domain.ArtworkConfig;
+import artcreator.domain.CellGrid;
 import artcreator.domain.DomainFactory;
 import artcreator.domain.Template;
 import artcreator.statemachine.StateMachineFactory;
 import artcreator.statemachine.port.State.S;
 import artcreator.statemachine.port.StateMachine;
 
+import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class CreatorFacade implements CreatorFactory, Creator {
     private CreatorImpl creator;
     private StateMachine stateMachine;
+    private Jobs jobs;
+    private final AtomicReference<CompletableFuture<CellGrid>> pendingApply = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<BufferedImage>> pendingPreview = new AtomicReference<>();
 
     @Override
-    public Creator creator() {
+    public synchronized Creator creator() {
         if (this.creator != null) return this;
         this.stateMachine = StateMachineFactory.FACTORY.stateMachine();
         this.creator = new CreatorImpl(stateMachine, DomainFactory.FACTORY.domain());
+        this.jobs = new Jobs();
         return this;
     }
 
+    // State checks run inside the job, against the state left by the jobs before it.
     @Override
-    public synchronized void loadImage(File file) {
-        if (!this.stateMachine.getState().isSubStateOf(S.HOME)) return;
-        this.creator.loadImage(file);
+    public CompletableFuture<Boolean> loadImage(File file) {
+        return this.jobs.edit(() -> this.stateMachine.getState().isSubStateOf(S.HOME) && this.creator.loadImage(file));
     }
 
     @Override
-    public synchronized void pixelate(int pixelSize) {
-        if (!this.stateMachine.getState().isSubStateOf(S.IMAGE_LOADED)) return;
-        this.creator.pixelate(pixelSize);
+    public CompletableFuture<BufferedImage> pixelate(int pixelSize) {
+        return this.jobs.edit(() -> {
+            if (!this.stateMachine.getState().isSubStateOf(S.IMAGE_LOADED)) return null;
+            return this.creator.pixelate(pixelSize);
+        });
     }
 
     @Override
-    public synchronized void applyConfig(ArtworkConfig config) {
-        if (!this.stateMachine.getState().isSubStateOf(S.IMAGE_LOADED)) return;
-        this.creator.applyConfig(config);
+    public CompletableFuture<CellGrid> applyConfig(ArtworkConfig config) {
+        var snapshot = config.copy();
+        var job = this.jobs.edit(() -> {
+            if (!this.stateMachine.getState().isSubStateOf(S.IMAGE_LOADED)) return null;
+            return this.creator.applyConfig(snapshot);
+        });
+        // Only the latest config matters; an older Apply is skipped or stopped.
+        var superseded = this.pendingApply.getAndSet(job);
+        if (superseded != null) superseded.cancel(false);
+        return job;
     }
 
     @Override
-    public synchronized void generatePDF(File outputFile) {
-        if (!this.stateMachine.getState().isSubStateOf(S.IMAGE_LOADED)) return;
-        this.creator.generatePDF(outputFile);
+    public CompletableFuture<BufferedImage> preview(ArtworkConfig config, int width, int height) {
+        var snapshot = config.copy();
+        var job = this.jobs.edit(() -> {
+            if (!this.stateMachine.getState().isSubStateOf(S.IMAGE_LOADED)) return null;
+            return this.creator.preview(snapshot, width, height);
+        });
+        var superseded = this.pendingPreview.getAndSet(job);
+        if (superseded != null) superseded.cancel(false);
+        return job;
     }
 
     @Override
-    public synchronized void reset() {
-        if (!this.stateMachine.getState().isSubStateOf(S.HOME)) return;
-        this.creator.reset();
+    public CompletableFuture<Boolean> generatePDF(File outputFile) {
+        return this.jobs.export(this::prepareExport,
+                export -> export != null && this.creator.generatePDF(export, outputFile));
     }
 
+    // Nothing written must not look like a finished export, so it fails instead of completing.
     @Override
-    public synchronized Template getTemplate() {
+    public CompletableFuture<Void> generatePDF(OutputStream out) {
+        return this.jobs.export(this::prepareExport, export -> {
+            this.creator.generatePDF(requireExport(export), out);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> generatePDF(WritableByteChannel channel) {
+        return this.jobs.export(this::prepareExport, export -> {
+            this.creator.generatePDF(requireExport(export), channel);
+            return null;
+        });
+    }
+
+    private static CreatorImpl.Export requireExport(CreatorImpl.Export export) {
+        if (export == null) throw new IllegalStateException("No image to export");
+        return export;
+    }
+
+    private CreatorImpl.Export prepareExport() {
+        if (!this.stateMachine.getState().isSubStateOf(S.IMAGE_LOADED)) return null;
+        return this.creator.prepareExport();
+    }
+
+    @Override
+    public CompletableFuture<Void> reset() {
+        return this.jobs.edit(() -> {
+            if (this.stateMachine.getState().isSubStateOf(S.HOME)) this.creator.reset();
+            return null;
+        });
+    }
+
+    @Override
+    public Template getTemplate() {
         return this.creator.getTemplate();
     }
 }
@@ -0,0 +1,43 @@
+package artcreator.creator.impl;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Callable;
+
+// Cooperative cancellation for one job. The job installs its token on the running thread, long
+// loops call checkCancelled() and Tiles carries the caller's token over to its worker threads.
+public final class CancellationToken {
+    static final CancellationToken NONE = new CancellationToken();
+    private static final ThreadLocal<CancellationToken> CURRENT = new ThreadLocal<>();
+
+    private volatile boolean cancelled;
+
+    public void cancel() { cancelled = true; }
+
+    public boolean isCancelled() { return cancelled; }
+
+    // Runs the task with this token installed on the current thread.
+    public <T> T run(Callable<T> task) throws Exception {
+        var previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            throwIfCancelled();
+            return task.call();
+        } finally {
+            if (previous != null) CURRENT.set(previous);
+            else CURRENT.remove();
+        }
+    }
+
+    static CancellationToken current() {
+        var token = CURRENT.get();
+        return token != null ? token : NONE;
+    }
+
+    static void checkCancelled() {
+        current().throwIfCancelled();
+    }
+
+    void throwIfCancelled() {
+        if (cancelled) throw new CancellationException("Job cancelled");
+    }
+}
@@ -0,0 +1,102 @@
+package artcreator.creator.impl;
+
+// Weighted color cube with 2^bits cells per channel. Each occupied cell is represented by the
+// mean of the colors that fell into it and weighted by their count.
+final class ColorHistogram {
+    private final int[] colors;
+    private final long[] weights;
+
+    private ColorHistogram(int[] colors, long[] weights) {
+        this.colors = colors;
+        this.weights = weights;
+    }
+
+    // weights == null counts every color once
+    static ColorHistogram of(int[] pixels, int[] weights, int bits, Tiles tiles) {
+        var cube = tiles.reduce(pixels.length, 1 << 16,
+                (from, to) -> new Cube(bits).add(pixels, weights, from, to), Cube::merge);
+        return cube.toHistogram();
+    }
+
+    // Same histogram as of() for colors that arrive in pieces, e.g. one band of cells at a time.
+    static final class Builder {
+        private final Cube cube;
+
+        Builder(int bits) {
+            this.cube = new Cube(bits);
+        }
+
+        void add(int[] pixels, int[] weights, int from, int to) {
+            cube.add(pixels, weights, from, to);
+        }
+
+        ColorHistogram build() {
+            return cube.toHistogram();
+        }
+    }
+
+    int[] palette(int targetCount) {
+        return MedianCut.palette(colors, weights, targetCount);
+    }
+
+    private static final class Cube {
+        private final int bits;
+        // Pixel areas; a cell of a huge, mostly uniform source can exceed the int range
+        private final long[] counts;
+        private final long[] sumR;
+        private final long[] sumG;
+        private final long[] sumB;
+
+        private Cube(int bits) {
+            this.bits = bits;
+            var size = 1 << (3 * bits);
+            counts = new long[size];
+            sumR = new long[size];
+            sumG = new long[size];
+            sumB = new long[size];
+        }
+
+        Cube add(int[] pixels, int[] weights, int from, int to) {
+            var drop = 8 - bits;
+            for (var i = from; i < to; i++) {
+                var r = (pixels[i] >> 16) & 0xFF;
+                var g = (pixels[i] >> 8) & 0xFF;
+                var b = pixels[i] & 0xFF;
+                var w = weights != null ? weights[i] : 1;
+                var cell = (r >> drop) << (2 * bits) | (g >> drop) << bits | (b >> drop);
+                counts[cell] += w;
+                sumR[cell] += (long) r * w;
+                sumG[cell] += (long) g * w;
+                sumB[cell] += (long) b * w;
+            }
+            return this;
+        }
+
+        static Cube merge(Cube left, Cube right) {
+            for (var cell = 0; cell < left.counts.length; cell++) {
+                left.counts[cell] += right.counts[cell];
+                left.sumR[cell] += right.sumR[cell];
+                left.sumG[cell] += right.sumG[cell];
+                left.sumB[cell] += right.sumB[cell];
+            }
+            return left;
+        }
+
+        ColorHistogram toHistogram() {
+            var occupied = 0;
+            for (var n : counts) {
+                if (n != 0) occupied++;
+            }
+            var colors = new int[occupied];
+            var weights = new long[occupied];
+            var i = 0;
+            for (var cell = 0; cell < counts.length; cell++) {
+                var n = counts[cell];
+                if (n == 0) continue;
+                colors[i] = (int) (sumR[cell] / n) << 16 | (int) (sumG[cell] / n) << 8 | (int) (sumB[cell] / n);
+                weights[i++] = n;
+            }
+            return new ColorHistogram(colors, weights);
+        }
+    }
+}
@@ -6,122 +6,74 @@ import java.util.*;
 import java.util.List;
 
 public final class ColorQuantizer {
+    public static final int EXACT = 0;
+    private static final int MIN_TILE = 1 << 14;
+
     private ColorQuantizer() {}
 
     public static BufferedImage quantize(BufferedImage image, int colorCount) {
-        var colors = extractColors(image);
-        var palette = medianCut(colors, colorCount);
-        return applyPalette(image, palette);
+        return quantize(image, colorCount, EXACT);
     }
 
-    public static List<Color> getPalette(BufferedImage image, int colorCount) {
-        var colors = extractColors(image);
-        return medianCut(colors, colorCount);
+    // histogramBits 5 or 6 runs median cut on a color cube instead of every pixel.
+    // Pixel work runs on the shared Tiles pool; the result does not depend on its size.
+    public static BufferedImage quantize(BufferedImage image, int colorCount, int histogramBits) {
+        var tiles = Tiles.shared();
+        var pixels = extractPixels(image, tiles);
+        return applyPalette(image, pixels, palette(pixels, null, colorCount, histogramBits, tiles), tiles);
     }
 
-    private static List<Color> extractColors(BufferedImage image) {
-        var colors = new ArrayList<Color>();
-        for (var y = 0; y < image.getHeight(); y++) {
-            for (var x = 0; x < image.getWidth(); x++) {
-                colors.add(new Color(image.getRGB(x, y)));
-            }
-        }
-        return colors;
+    public static List<Color> getPalette(BufferedImage image, int colorCount) {
+        return getPalette(image, colorCount, EXACT);
     }
 
-    private static List<Color> medianCut(List<Color> colors, int targetCount) {
-        var buckets = new ArrayList<List<Color>>();
-        buckets.add(new ArrayList<>(colors));
-
-        while (buckets.size() < targetCount) {
-            var largest = findLargestBucket(buckets);
-            if (largest.size() < 2) break;
-
-            var channel = findWidestChannel(largest);
-            largest.sort(Comparator.comparingInt(c -> getChannel(c, channel)));
-
-            var mid = largest.size() / 2;
-            var left = new ArrayList<>(largest.subList(0, mid));
-            var right = new ArrayList<>(largest.subList(mid, largest.size()));
-
-            buckets.remove(largest);
-            buckets.add(left);
-            buckets.add(right);
-        }
-
-        return buckets.stream()
-                .map(ColorQuantizer::averageColor)
-                .toList();
+    public static List<Color> getPalette(BufferedImage image, int colorCount, int histogramBits) {
+        var tiles = Tiles.shared();
+        return toColors(palette(extractPixels(image, tiles), null, colorCount, histogramBits, tiles));
     }
 
-    private static List<Color> findLargestBucket(List<List<Color>> buckets) {
-        return buckets.stream()
-                .max(Comparator.comparingInt(List::size))
-                .orElse(buckets.getFirst());
+    // Colors are packed 0xRRGGBB; weights (may be null) give how many pixels each color stands for.
+    static int[] palette(int[] colors, int[] weights, int colorCount, int histogramBits, Tiles tiles) {
+        if (histogramBits == EXACT) return MedianCut.palette(colors, weights, colorCount);
+        return ColorHistogram.of(colors, weights, histogramBits, tiles).palette(colorCount);
     }
 
-    private static int findWidestChannel(List<Color> colors) {
-        var minR = 255; var maxR = 0;
-        var minG = 255; var maxG = 0;
-        var minB = 255; var maxB = 0;
-
-        for (var c : colors) {
-            minR = Math.min(minR, c.getRed()); maxR = Math.max(maxR, c.getRed());
-            minG = Math.min(minG, c.getGreen()); maxG = Math.max(maxG, c.getGreen());
-            minB = Math.min(minB, c.getBlue()); maxB = Math.max(maxB, c.getBlue());
-        }
-
-        var rangeR = maxR - minR;
-        var rangeG = maxG - minG;
-        var rangeB = maxB - minB;
-
-        if (rangeR >= rangeG && rangeR >= rangeB) return 0;
-        if (rangeG >= rangeR && rangeG >= rangeB) return 1;
-        return 2;
+    // Palette index of every color, one PaletteIndex per tile.
+    static byte[] mapToPalette(int[] colors, int[] palette, Tiles tiles) {
+        var indices = new byte[colors.length];
+        tiles.forEach(colors.length, MIN_TILE, (from, to) -> {
+            var index = new PaletteIndex(palette);
+            for (var i = from; i < to; i++) {
+                indices[i] = (byte) index.indexOf(colors[i]);
+            }
+        });
+        return indices;
     }
 
-    private static int getChannel(Color c, int channel) {
-        return switch (channel) {
-            case 0 -> c.getRed();
-            case 1 -> c.getGreen();
-            default -> c.getBlue();
-        };
+    private static int[] extractPixels(BufferedImage image, Tiles tiles) {
+        var source = Rasters.pixels(image);
+        var pixels = new int[image.getWidth() * image.getHeight()];
+        tiles.forEach(pixels.length, MIN_TILE, (from, to) -> {
+            for (var i = from; i < to; i++) {
+                pixels[i] = source[i] & 0xFFFFFF;
+            }
+        });
+        return pixels;
     }
 
-    private static Color averageColor(List<Color> colors) {
-        if (colors.isEmpty()) return Color.BLACK;
-        var r = 0L; var g = 0L; var b = 0L;
-        for (var c : colors) {
-            r += c.getRed();
-            g += c.getGreen();
-            b += c.getBlue();
-        }
-        var n = colors.size();
-        return new Color((int)(r/n), (int)(g/n), (int)(b/n));
+    private static List<Color> toColors(int[] palette) {
+        return Arrays.stream(palette).mapToObj(Color::new).toList();
     }
 
-    private static BufferedImage applyPalette(BufferedImage image, List<Color> palette) {
-        var result = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
-        for (var y = 0; y < image.getHeight(); y++) {
-            for (var x = 0; x < image.getWidth(); x++) {
-                var original = new Color(image.getRGB(x, y));
-                var nearest = findNearest(original, palette);
-                result.setRGB(x, y, nearest.getRGB());
+    private static BufferedImage applyPalette(BufferedImage image, int[] pixels, int[] palette, Tiles tiles) {
+        var result = Rasters.newRgbImage(image.getWidth(), image.getHeight());
+        var data = Rasters.data(result);
+        tiles.forEach(pixels.length, MIN_TILE, (from, to) -> {
+            var index = new PaletteIndex(palette);
+            for (var i = from; i < to; i++) {
+                data[i] = index.nearestColor(pixels[i]);
             }
-        }
+        });
         return result;
     }
-
-    private static Color findNearest(Color target, List<Color> palette) {
-        return palette.stream()
-                .min(Comparator.comparingInt(c -> colorDistance(target, c)))
-                .orElse(target);
-    }
-
-    private static int colorDistance(Color a, Color b) {
-        var dr = a.getRed() - b.getRed();
-        var dg = a.getGreen() - b.getGreen();
-        var db = a.getBlue() - b.getBlue();
-        return dr*dr + dg*dg + db*db;
-    }
 }
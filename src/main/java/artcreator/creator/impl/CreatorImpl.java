@@ -1,89 +1,204 @@
 package artcreator.creator.impl;
 
 import artcreator.domain.ArtworkConfig;
+import artcreator.domain.CellGrid;
+import artcreator.domain.ImagePyramid;
+import artcreator.domain.SummedAreaTable;
 import artcreator.domain.Template;
 import artcreator.domain.port.Domain;
 import artcreator.statemachine.port.State.S;
 import artcreator.statemachine.port.StateMachine;
 
-import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class CreatorImpl {
     private static final Logger LOG = Logger.getLogger(CreatorImpl.class.getName());
+    // A summed-area table costs 8 bytes per pixel for as long as the image stays loaded, so only
+    // images up to this size get one (default 2^24 pixels, 128 MB). Larger ones are averaged directly.
+    private static final long SAT_MAX_PIXELS = Long.getLong("artcreator.satPixels", 1L << 24);
 
     private final StateMachine stateMachine;
     private final Template template;
     private final PixelationEngine engine = new PixelationEngine();
     private final PDFGenerator pdfGenerator = new PDFGenerator();
+    private final GridCache gridCache = new GridCache(Long.getLong("artcreator.gridCacheBytes", 64L << 20));
 
     public CreatorImpl(StateMachine stateMachine, Domain domain) {
         this.stateMachine = stateMachine;
         this.template = domain.mkTemplate();
     }
 
-    public void loadImage(File file) {
+    public boolean loadImage(File file) {
         try {
-            var image = ImageIO.read(file);
-            if (image == null) {
+            var decoded = ImageLoader.load(file, ImageLoader.MAX_PIXELS);
+            if (decoded == null) {
                 LOG.log(Level.WARNING, "Failed to load: " + file.getName());
-                return;
+                return false;
             }
-            template.setOriginalImage(image);
+            template.setOriginalImage(decoded.image());
+            if (decoded.subsampling() > 1) template.setSource(file, decoded.subsampling());
+            buildDisplayPyramid();
             stateMachine.setState(S.IMAGE_LOADED);
             LOG.log(Level.INFO, "Loaded: " + file.getName());
+            return true;
         } catch (IOException e) {
             LOG.log(Level.SEVERE, "Error loading image", e);
+            return false;
         }
     }
 
-    public void pixelate(int pixelSize) {
+    public BufferedImage pixelate(int pixelSize) {
         if (!template.hasOriginalImage()) {
             LOG.log(Level.WARNING, "No image loaded");
-            return;
+            return null;
         }
-        var pixelated = engine.pixelate(template.getOriginalImage(), pixelSize);
+        var table = summedAreaTable();
+        var pixelated = table != null
+                ? engine.pixelate(table, pixelSize)
+                : engine.pixelate(template.getOriginalImage(), pixelSize);
         template.setPixelatedImage(pixelated);
         template.setLastPixelSize(pixelSize);
+        buildDisplayPyramid();
         stateMachine.setState(S.PIXELATED);
         LOG.log(Level.INFO, "Pixelated with size: " + pixelSize);
+        return pixelated;
     }
 
-    public void applyConfig(ArtworkConfig config) {
+    public CellGrid applyConfig(ArtworkConfig config) {
         if (!template.hasOriginalImage()) {
             LOG.log(Level.WARNING, "No image loaded");
-            return;
+            return null;
         }
+        // The grid is built before anything is stored, so a cancelled job leaves the template as it was
+        var grid = createCellGrid(config);
+        if (grid == null) return null;
+
         // Copy config values to template's config
         var templateConfig = template.getConfig();
         templateConfig.setPixelSize(config.getPixelSize());
         templateConfig.setColorCount(config.getColorCount());
         templateConfig.setMode3D(config.isMode3D());
         templateConfig.setOutputSize(config.getOutputSize());
+        templateConfig.setHistogramBits(config.getHistogramBits());
 
-        var pixelated = engine.pixelate(template.getOriginalImage(), templateConfig);
-        template.setPixelatedImage(pixelated);
+        template.setCellGrid(grid);
         stateMachine.setState(S.PIXELATED);
         LOG.log(Level.INFO, "Applied config: pixelSize=" + config.getPixelSize() +
                 ", colors=" + config.getColorCount() + ", 3D=" + config.isMode3D());
+        return grid;
+    }
+
+    // A config rendered before for the same source comes from the cache.
+    private CellGrid createCellGrid(ArtworkConfig config) {
+        var key = GridCache.Key.of(sourceDigest(), config);
+        var grid = gridCache.get(key);
+        if (grid != null) {
+            LOG.log(Level.FINE, "Grid cache hit (" + gridCache.hits() + " hits, " + gridCache.misses() + " misses)");
+            return grid;
+        }
+        grid = computeCellGrid(config);
+        if (grid != null) gridCache.put(key, grid);
+        return grid;
+    }
+
+    // Sources that were subsampled on load are pixelated from the file at full resolution. Each
+    // config missing from the cache decodes the file once more; PNG and JPEG in one pass, other
+    // formats with a region read per band.
+    private CellGrid computeCellGrid(ArtworkConfig config) {
+        if (template.getSourceFile() == null) {
+            var table = summedAreaTable();
+            return table != null ? engine.createCellGrid(table, config) : engine.createCellGrid(template.getOriginalImage(), config);
+        }
+        try {
+            return engine.createCellGrid(template.getSourceFile(), config);
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "Error reading " + template.getSourceFile().getName(), e);
+            return null;
+        }
+    }
+
+    // The loaded image plus how it was subsampled, since a streamed grid comes from the full file.
+    private long sourceDigest() {
+        if (template.getSourceDigest() == 0) {
+            var digest = Rasters.digest(template.getOriginalImage()) * 31 + template.getSourceSubsampling();
+            template.setSourceDigest(digest == 0 ? 1 : digest);
+        }
+        return template.getSourceDigest();
+    }
+
+    // Quick stand-in for applyConfig while a slider moves: cells no smaller than a preview pixel,
+    // a histogram palette and an image of about the preview size. The template is not changed.
+    public BufferedImage preview(ArtworkConfig config, int width, int height) {
+        if (!template.hasOriginalImage() || width <= 0 || height <= 0) return null;
+        var image = template.getOriginalImage();
+        var scale = Math.min(1, Math.min(width / (double) image.getWidth(), height / (double) image.getHeight()));
+        var approx = config.copy();
+        // Cells are measured in source pixels, the loaded image may be subsampled
+        var subsampling = template.getSourceSubsampling();
+        approx.setPixelSize(Math.max((config.getPixelSize() + subsampling - 1) / subsampling, (int) Math.ceil(1 / scale)));
+        approx.setHistogramBits(5);
+        var table = summedAreaTable();
+        var grid = table != null ? engine.createCellGrid(table, approx) : engine.createCellGrid(image, approx);
+        return grid.toImage(Math.max(1, (int) (image.getWidth() * scale)), Math.max(1, (int) (image.getHeight() * scale)));
+    }
+
+    // Built here on the job thread, so observers redrawing on the EDT find it ready.
+    private void buildDisplayPyramid() {
+        template.setDisplayPyramid(ImagePyramid.of(template.getDisplayImage()));
+    }
+
+    // Null for images above SAT_MAX_PIXELS. The table is dropped with the image it was built for.
+    private SummedAreaTable summedAreaTable() {
+        var image = template.getOriginalImage();
+        if ((long) image.getWidth() * image.getHeight() > SAT_MAX_PIXELS) return null;
+        if (template.getSummedAreaTable() == null) {
+            template.setSummedAreaTable(engine.buildSummedAreaTable(template.getOriginalImage()));
+        }
+        return template.getSummedAreaTable();
     }
 
-    public void generatePDF(File outputFile) {
-        if (template.getDisplayImage() == null) {
+    // What an export works from. Taken up front, so the export itself can run while later
+    // edits change the template.
+    public record Export(CellGrid grid, ArtworkConfig config) {}
+
+    // The PDF is built from the quantized grid; quantize now if the preview never was.
+    public Export prepareExport() {
+        if (!template.hasOriginalImage()) {
             LOG.log(Level.WARNING, "No image to export");
-            return;
+            return null;
         }
+        if (template.getCellGrid() == null && applyConfig(template.getConfig().copy()) == null) return null;
+        return new Export(template.getCellGrid(), template.getConfig().copy());
+    }
+
+    public boolean generatePDF(Export export, File outputFile) {
         try {
-            pdfGenerator.generate(template, outputFile);
+            pdfGenerator.generate(export.grid(), export.config(), outputFile);
             LOG.log(Level.INFO, "PDF generated: " + outputFile.getName());
-        } catch (Exception e) {
+            return true;
+        } catch (IOException e) {
             LOG.log(Level.SEVERE, "Error generating PDF", e);
+            return false;
         }
     }
 
+    // Errors are left to the caller, who owns the stream.
+    public void generatePDF(Export export, OutputStream out) throws IOException {
+        pdfGenerator.generate(export.grid(), export.config(), out);
+        LOG.log(Level.INFO, "PDF streamed");
+    }
+
+    public void generatePDF(Export export, WritableByteChannel channel) throws IOException {
+        pdfGenerator.generate(export.grid(), export.config(), channel);
+        LOG.log(Level.INFO, "PDF streamed");
+    }
+
     public void reset() {
         template.setOriginalImage(null);
         template.setPixelatedImage(null);
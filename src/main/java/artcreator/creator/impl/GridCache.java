@@ -0,0 +1,74 @@
+package artcreator.creator.impl;
+
+import artcreator.domain.ArtworkConfig;
+import artcreator.domain.CellGrid;
+
+import java.lang.ref.SoftReference;
+import java.util.LinkedHashMap;
+
+// Cell grids already computed, keyed by a digest of the source and the config fields that shape
+// the grid. Least recently used grids go first once the byte budget is exceeded, and the GC may
+// clear any of them under heap pressure. Grids are immutable, so a hit is shared as is.
+final class GridCache {
+    // Only these fields change the grid; mode and output size just change how it is exported
+    record Key(long sourceDigest, int pixelSize, int colorCount, int histogramBits) {
+        static Key of(long sourceDigest, ArtworkConfig config) {
+            return new Key(sourceDigest, config.getPixelSize(), config.getColorCount(), config.getHistogramBits());
+        }
+    }
+
+    private record Entry(SoftReference<CellGrid> grid, long bytes) {}
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+
+    GridCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    synchronized CellGrid get(Key key) {
+        var entry = entries.get(key);
+        var grid = entry != null ? entry.grid().get() : null;
+        if (grid == null) {
+            if (entry != null) remove(key);
+            misses++;
+            return null;
+        }
+        hits++;
+        return grid;
+    }
+
+    synchronized void put(Key key, CellGrid grid) {
+        var size = sizeOf(grid);
+        if (size > maxBytes) return;
+        if (entries.containsKey(key)) remove(key);
+        entries.values().removeIf(entry -> {
+            if (entry.grid().get() != null) return false;
+            bytes -= entry.bytes();
+            return true;
+        });
+        entries.put(key, new Entry(new SoftReference<>(grid), size));
+        bytes += size;
+        for (var eldest = entries.entrySet().iterator(); bytes > maxBytes; ) {
+            bytes -= eldest.next().getValue().bytes();
+            eldest.remove();
+        }
+    }
+
+    synchronized long hits() { return hits; }
+    synchronized long misses() { return misses; }
+    synchronized long bytes() { return bytes; }
+    synchronized int size() { return entries.size(); }
+
+    private void remove(Key key) {
+        bytes -= entries.remove(key).bytes();
+    }
+
+    // One byte per cell plus the palette and a rough object overhead
+    private static long sizeOf(CellGrid grid) {
+        return (long) grid.getWidth() * grid.getHeight() + grid.getPaletteSize() * 4L + 128;
+    }
+}
@@ -0,0 +1,276 @@
+package artcreator.creator.impl;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.event.IIOReadUpdateListener;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import org.w3c.dom.Node;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+// Decodes through an ImageReader instead of ImageIO.read. Sources above the pixel budget are
+// subsampled by the reader while it decodes, so the full-resolution raster never exists and
+// peak memory follows the budget rather than the file.
+final class ImageLoader {
+    // About 33 MP, far more than a grid of the largest output size can show
+    static final long MAX_PIXELS = Long.getLong("artcreator.maxPixels", 1L << 25);
+
+    // The decoded image and the step it was subsampled by, 1 for full resolution.
+    record Decoded(BufferedImage image, int subsampling) {}
+
+    private ImageLoader() {}
+
+    // Null when no installed reader understands the file.
+    static Decoded load(File file, long maxPixels) throws IOException {
+        try (var input = ImageIO.createImageInputStream(file)) {
+            var reader = openReader(input);
+            if (reader == null) return null;
+            try {
+                return read(reader, maxPixels);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static Decoded read(ImageReader reader, long maxPixels) throws IOException {
+        var step = subsampling(reader.getWidth(0), reader.getHeight(0), maxPixels);
+        var param = reader.getDefaultReadParam();
+        if (step > 1) param.setSourceSubsampling(step, step, 0, 0);
+        // Decoding straight into packed ints spares the later conversion copy, where the reader allows it
+        for (var types = reader.getImageTypes(0); types.hasNext(); ) {
+            var type = types.next();
+            if (type.getBufferedImageType() == BufferedImage.TYPE_INT_RGB) {
+                param.setDestinationType(type);
+                break;
+            }
+        }
+        return new Decoded(reader.read(0, param), step);
+    }
+
+    // Smallest step whose subsampled image fits into maxPixels.
+    static int subsampling(long width, long height, long maxPixels) {
+        var step = Math.max(1, (int) Math.sqrt((double) width * height / maxPixels));
+        while (ceilDiv(width, step) * ceilDiv(height, step) > maxPixels) step++;
+        return step;
+    }
+
+    private static long ceilDiv(long value, int step) {
+        return (value + step - 1) / step;
+    }
+
+    private static ImageReader openReader(ImageInputStream input) {
+        if (input == null) return null;
+        var readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) return null;
+        var reader = readers.next();
+        reader.setInput(input, true, true);
+        return reader;
+    }
+
+    // Receives one band of packed RGB rows with a stride of the image width. The array is reused
+    // for the next band, so the consumer has to be done with it when it returns.
+    @FunctionalInterface
+    interface BandConsumer {
+        void accept(int[] pixels, int y, int rows);
+    }
+
+    // Full-resolution access in horizontal bands, only one of which is in memory at a time.
+    // Non-interlaced PNG and sequential JPEG decode top to bottom into a ring of one band, in one
+    // pass up to 2^31 pixels and in a few beyond. Other formats fall back to a region read per
+    // band, which re-decodes the rows above it in formats without random access, so their cost
+    // grows with height times the number of bands.
+    static final class Bands implements Closeable {
+        // A raster and its sample model address at most 2^31 - 1 elements
+        private static final long CHUNK_PIXELS = Integer.MAX_VALUE - 1;
+
+        private final ImageInputStream input;
+        private final ImageReader reader;
+        private final int width;
+        private final int height;
+        private boolean sequential;
+
+        private Bands(ImageInputStream input, ImageReader reader) throws IOException {
+            this.input = input;
+            this.reader = reader;
+            this.width = reader.getWidth(0);
+            this.height = reader.getHeight(0);
+        }
+
+        static Bands open(File file) throws IOException {
+            var input = ImageIO.createImageInputStream(file);
+            var reader = openReader(input);
+            if (reader == null) {
+                if (input != null) input.close();
+                throw new IOException("Unsupported image: " + file.getName());
+            }
+            return new Bands(input, reader);
+        }
+
+        int width() { return width; }
+        int height() { return height; }
+
+        // Whether the last forEach got every band out of the single sequential decode.
+        boolean sequential() { return sequential; }
+
+        // Hands the image to the consumer in bands of bandRows rows, the last one possibly shorter.
+        void forEach(int bandRows, BandConsumer consumer) throws IOException {
+            forEach(bandRows, CHUNK_PIXELS, consumer);
+        }
+
+        void forEach(int bandRows, long chunkPixels, BandConsumer consumer) throws IOException {
+            var y = streamable(bandRows, chunkPixels) ? stream(bandRows, chunkPixels, consumer) : 0;
+            sequential = y >= height;
+            for (; y < height; y += bandRows) {
+                var rows = Math.min(bandRows, height - y);
+                var param = reader.getDefaultReadParam();
+                param.setSourceRegion(new Rectangle(0, y, width, rows));
+                consumer.accept(Rasters.pixels(reader.read(0, param)), y, rows);
+            }
+        }
+
+        // Only these readers are known to write every row exactly once and in order
+        private boolean streamable(int bandRows, long chunkPixels) {
+            if ((long) width * bandRows > chunkPixels) return false;
+            try {
+                var metadata = reader.getImageMetadata(0);
+                var format = metadata != null ? metadata.getNativeMetadataFormatName() : null;
+                if ("javax_imageio_png_1.0".equals(format)) {
+                    var header = node(metadata.getAsTree(format), "IHDR");
+                    return header != null && "none".equals(header.getAttribute("interlaceMethod"));
+                }
+                if ("javax_imageio_jpeg_image_1.0".equals(format)) {
+                    // Process 2 is progressive, whose passes revisit every row
+                    var frame = node(metadata.getAsTree(format), "sof");
+                    return frame != null && !"2".equals(frame.getAttribute("process"));
+                }
+            } catch (IOException | RuntimeException e) {
+                // Unreadable metadata just means region reads
+            }
+            return false;
+        }
+
+        private static IIOMetadataNode node(Node tree, String name) {
+            var nodes = ((IIOMetadataNode) tree).getElementsByTagName(name);
+            return nodes.getLength() > 0 ? (IIOMetadataNode) nodes.item(0) : null;
+        }
+
+        // Decodes once into a ring of bandRows rows and passes each band on as its last row arrives.
+        // A raster holds at most chunkPixels, so taller images are decoded in chunks of whole bands,
+        // each of which decodes the rows above it once more: a few passes instead of one per band.
+        // Returns the first row not delivered, which is the height unless the reader refused the
+        // destination or wrote out of order; those bands are left to region reads.
+        private int stream(int bandRows, long chunkPixels, BandConsumer consumer) throws IOException {
+            var chunkRows = (int) Math.min(height, chunkPixels / width / bandRows * bandRows);
+            var ring = new RingBuffer(width, chunkRows, bandRows);
+            var model = new DirectColorModel(24, 0xFF0000, 0xFF00, 0xFF);
+            var listener = new RingListener(ring, bandRows, consumer);
+            reader.addIIOReadUpdateListener(listener);
+            try {
+                for (var y = 0; y < height && listener.delivered == y; y += chunkRows) {
+                    var rows = Math.min(chunkRows, height - y);
+                    var raster = Raster.createWritableRaster(model.createCompatibleSampleModel(width, rows), ring, null);
+                    var param = reader.getDefaultReadParam();
+                    if (rows < height) param.setSourceRegion(new Rectangle(0, y, width, rows));
+                    param.setDestination(new BufferedImage(model, raster, false, null));
+                    listener.chunkStart = y;
+                    reader.read(0, param);
+                    if (listener.broken) break;
+                }
+            } catch (IOException | RuntimeException e) {
+                if (listener.failure != null) throw listener.failure;
+                // Anything else is the reader, and the region reads pick up where it stopped
+            } finally {
+                reader.removeIIOReadUpdateListener(listener);
+            }
+            if (listener.failure != null) throw listener.failure;
+            return listener.delivered;
+        }
+
+        private final class RingListener implements IIOReadUpdateListener {
+            private final RingBuffer ring;
+            private final int bandRows;
+            private final BandConsumer consumer;
+            private int chunkStart;
+            private int delivered;
+            private int next;
+            private boolean broken;
+            private RuntimeException failure;
+
+            RingListener(RingBuffer ring, int bandRows, BandConsumer consumer) {
+                this.ring = ring;
+                this.bandRows = bandRows;
+                this.consumer = consumer;
+            }
+
+            @Override
+            public void imageUpdate(ImageReader source, BufferedImage image, int minX, int minY, int w, int h,
+                                    int periodX, int periodY, int[] bands) {
+                if (broken) return;
+                // Updates are in raster rows, which start at the chunk
+                minY += chunkStart;
+                var end = Math.min(delivered + bandRows, height);
+                // A row written twice, skipped or past the band would have overwritten or missed ring rows
+                if (minY != next || periodY != 1 || minX != 0 || periodX != 1 || w != width || minY + h > end) {
+                    broken = true;
+                    reader.abort();
+                    return;
+                }
+                next = minY + h;
+                if (next < end) return;
+                try {
+                    consumer.accept(ring.data, delivered, end - delivered);
+                } catch (RuntimeException e) {
+                    failure = e;
+                    broken = true;
+                    reader.abort();
+                    return;
+                }
+                delivered = end;
+            }
+
+            @Override public void passStarted(ImageReader source, BufferedImage image, int pass, int minPass,
+                                              int maxPass, int minX, int minY, int periodX, int periodY, int[] bands) {}
+            @Override public void passComplete(ImageReader source, BufferedImage image) {}
+            @Override public void thumbnailPassStarted(ImageReader source, BufferedImage image, int pass, int minPass,
+                                                       int maxPass, int minX, int minY, int periodX, int periodY, int[] bands) {}
+            @Override public void thumbnailUpdate(ImageReader source, BufferedImage image, int minX, int minY, int w,
+                                                  int h, int periodX, int periodY, int[] bands) {}
+            @Override public void thumbnailPassComplete(ImageReader source, BufferedImage image) {}
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.dispose();
+            input.close();
+        }
+    }
+
+    // Looks like a whole image to the reader but only keeps the last rows rows, row y in slot y % rows.
+    private static final class RingBuffer extends DataBuffer {
+        private final int[] data;
+        private final int width;
+        private final int rows;
+
+        RingBuffer(int width, int height, int rows) {
+            super(TYPE_INT, width * height);
+            this.width = width;
+            this.rows = rows;
+            this.data = new int[width * rows];
+        }
+
+        private int slot(int i) {
+            return i / width % rows * width + i % width;
+        }
+
+        @Override public int getElem(int bank, int i) { return data[slot(i)]; }
+        @Override public void setElem(int bank, int i, int value) { data[slot(i)] = value; }
+    }
+}
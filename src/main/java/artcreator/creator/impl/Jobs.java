@@ -0,0 +1,77 @@
+package artcreator.creator.impl;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Runs creator work off the caller's thread. Edits of the template run one after another on the
+// edit lane; exports take their snapshot there and render on the export lane, so a long export
+// does not hold up later edits. Cancelling a returned future cancels the job's token, which
+// stops it at the next checked loop, or skips it if it has not started yet.
+public final class Jobs {
+    @FunctionalInterface
+    public interface Job<T> {
+        T run() throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Step<S, T> {
+        T run(S input) throws Exception;
+    }
+
+    private final ExecutorService editLane = lane("artcreator-edit");
+    private final ExecutorService exportLane = lane("artcreator-export");
+
+    public <T> CompletableFuture<T> edit(Job<T> job) {
+        var future = new JobFuture<T>();
+        editLane.execute(() -> future.run(job));
+        return future;
+    }
+
+    // prepare runs on the edit lane, export on the export lane with its result.
+    public <S, T> CompletableFuture<T> export(Job<S> prepare, Step<S, T> export) {
+        var future = new JobFuture<T>();
+        editLane.execute(() -> {
+            var input = future.attempt(prepare);
+            if (!future.isDone()) exportLane.execute(() -> future.run(() -> export.run(input)));
+        });
+        return future;
+    }
+
+    private static ExecutorService lane(String name) {
+        return Executors.newSingleThreadExecutor(task -> {
+            var thread = new Thread(task, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static final class JobFuture<T> extends CompletableFuture<T> {
+        private final CancellationToken token = new CancellationToken();
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            token.cancel();
+            return super.cancel(mayInterruptIfRunning);
+        }
+
+        void run(Job<T> job) {
+            var result = attempt(job);
+            if (!isDone()) complete(result);
+        }
+
+        // Runs one step under the job's token; any failure completes the future exceptionally.
+        // Errors such as OutOfMemoryError complete it too, so callers are not left waiting, and
+        // are then rethrown to the lane's thread, which the executor replaces.
+        <R> R attempt(Job<R> step) {
+            if (isDone()) return null;
+            try {
+                return token.run(step::run);
+            } catch (Throwable t) {
+                completeExceptionally(t);
+                if (t instanceof Error error) throw error;
+                return null;
+            }
+        }
+    }
+}
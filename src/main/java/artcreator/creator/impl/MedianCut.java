@@ -0,0 +1,148 @@
+package artcreator.creator.impl;
+
+final class MedianCut {
+    private MedianCut() {}
+
+    // Colors are packed 0xRRGGBB, weights == null counts every color once. Buckets are index
+    // ranges into one working copy and are split by a stable counting sort, so the result
+    // matches a stable sort on boxed colors.
+    static int[] palette(int[] colors, int[] weights, int targetCount) {
+        long[] wide = null;
+        if (weights != null) {
+            wide = new long[weights.length];
+            for (var i = 0; i < weights.length; i++) wide[i] = weights[i];
+        }
+        return sort(colors.clone(), wide, targetCount);
+    }
+
+    // Weights as long, for histogram cells that may stand for more than 2^31 pixels.
+    static int[] palette(int[] colors, long[] weights, int targetCount) {
+        return sort(colors.clone(), weights != null ? weights.clone() : null, targetCount);
+    }
+
+    // Works on the given arrays, which the caller has copied.
+    private static int[] sort(int[] colors, long[] weights, int targetCount) {
+        var scratch = new int[colors.length];
+        var weightScratch = weights != null ? new long[weights.length] : null;
+        var capacity = Math.max(1, targetCount);
+        var from = new int[capacity];
+        var to = new int[capacity];
+        var total = new long[capacity];
+        to[0] = colors.length;
+        total[0] = weightOf(weights, 0, colors.length);
+        var count = 1;
+
+        while (count < targetCount) {
+            CancellationToken.checkCancelled();
+            var largest = findLargestBucket(from, to, total, count);
+            if (largest < 0) break;
+            var lo = from[largest];
+            var hi = to[largest];
+            var bucketTotal = total[largest];
+
+            var shift = findWidestChannelShift(colors, lo, hi);
+            sortByChannel(colors, scratch, lo, hi, shift, weights, weightScratch);
+
+            var mid = findMedian(weights, lo, hi, bucketTotal);
+            var leftTotal = weightOf(weights, lo, mid);
+            System.arraycopy(from, largest + 1, from, largest, count - largest - 1);
+            System.arraycopy(to, largest + 1, to, largest, count - largest - 1);
+            System.arraycopy(total, largest + 1, total, largest, count - largest - 1);
+            count--;
+            from[count] = lo;
+            to[count] = mid;
+            total[count++] = leftTotal;
+            from[count] = mid;
+            to[count] = hi;
+            total[count++] = bucketTotal - leftTotal;
+        }
+
+        var palette = new int[count];
+        for (var i = 0; i < count; i++) {
+            palette[i] = averageColor(colors, weights, from[i], to[i]);
+        }
+        return palette;
+    }
+
+    // Heaviest bucket that still holds at least two entries, -1 if none can be split.
+    private static int findLargestBucket(int[] from, int[] to, long[] total, int count) {
+        var largest = -1;
+        for (var i = 0; i < count; i++) {
+            if (to[i] - from[i] < 2) continue;
+            if (largest < 0 || total[i] > total[largest]) largest = i;
+        }
+        return largest;
+    }
+
+    private static int findWidestChannelShift(int[] colors, int lo, int hi) {
+        var minR = 255; var maxR = 0;
+        var minG = 255; var maxG = 0;
+        var minB = 255; var maxB = 0;
+
+        for (var i = lo; i < hi; i++) {
+            var r = (colors[i] >> 16) & 0xFF;
+            var g = (colors[i] >> 8) & 0xFF;
+            var b = colors[i] & 0xFF;
+            minR = Math.min(minR, r); maxR = Math.max(maxR, r);
+            minG = Math.min(minG, g); maxG = Math.max(maxG, g);
+            minB = Math.min(minB, b); maxB = Math.max(maxB, b);
+        }
+
+        var rangeR = maxR - minR;
+        var rangeG = maxG - minG;
+        var rangeB = maxB - minB;
+
+        if (rangeR >= rangeG && rangeR >= rangeB) return 16;
+        if (rangeG >= rangeR && rangeG >= rangeB) return 8;
+        return 0;
+    }
+
+    private static void sortByChannel(int[] colors, int[] scratch, int lo, int hi, int shift,
+                                      long[] weights, long[] weightScratch) {
+        var offsets = new int[257];
+        for (var i = lo; i < hi; i++) {
+            offsets[((colors[i] >> shift) & 0xFF) + 1]++;
+        }
+        for (var v = 0; v < 256; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        for (var i = lo; i < hi; i++) {
+            var target = lo + offsets[(colors[i] >> shift) & 0xFF]++;
+            scratch[target] = colors[i];
+            if (weights != null) weightScratch[target] = weights[i];
+        }
+        System.arraycopy(scratch, lo, colors, lo, hi - lo);
+        if (weights != null) System.arraycopy(weightScratch, lo, weights, lo, hi - lo);
+    }
+
+    // Largest left half whose weight does not exceed half the bucket; both halves stay non-empty.
+    private static int findMedian(long[] weights, int lo, int hi, long bucketTotal) {
+        if (weights == null) return lo + (hi - lo) / 2;
+        var mid = lo + 1;
+        var left = weights[lo];
+        while (mid < hi - 1 && (left + weights[mid]) * 2 <= bucketTotal) {
+            left += weights[mid++];
+        }
+        return mid;
+    }
+
+    private static long weightOf(long[] weights, int lo, int hi) {
+        if (weights == null) return hi - lo;
+        var sum = 0L;
+        for (var i = lo; i < hi; i++) sum += weights[i];
+        return sum;
+    }
+
+    private static int averageColor(int[] colors, long[] weights, int lo, int hi) {
+        var n = weightOf(weights, lo, hi);
+        if (n == 0) return 0;
+        var r = 0L; var g = 0L; var b = 0L;
+        for (var i = lo; i < hi; i++) {
+            var w = weights != null ? weights[i] : 1L;
+            r += ((colors[i] >> 16) & 0xFF) * w;
+            g += ((colors[i] >> 8) & 0xFF) * w;
+            b += (colors[i] & 0xFF) * w;
+        }
+        return (int) (r / n) << 16 | (int) (g / n) << 8 | (int) (b / n);
+    }
+}
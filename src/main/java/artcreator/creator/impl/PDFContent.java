@@ -0,0 +1,129 @@
+package artcreator.creator.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+// Content stream builder that formats numbers itself and writes into a reusable byte buffer.
+// With a target stream the buffer is flushed whenever it fills, so a page never has to be held
+// in memory; without one the buffer grows and toByteArray() returns the finished stream.
+final class PDFContent {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int[] SCALE = {1, 10, 100, 1000};
+
+    private final OutputStream target;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int count;
+
+    PDFContent() {
+        this(null);
+    }
+
+    PDFContent(OutputStream target) {
+        this.target = target;
+    }
+
+    PDFContent text(String s) throws IOException {
+        for (var i = 0; i < s.length(); i++) put((byte) s.charAt(i));
+        return this;
+    }
+
+    // Same digits as String.format(Locale.US, "%.<decimals>f", value) for decimals 0..3, except
+    // that values rounding to zero never get a sign ("0.00", not "-0.00").
+    PDFContent number(float value, int decimals) throws IOException {
+        var scaled = Math.round((double) value * SCALE[decimals]);
+        if (scaled < 0) {
+            put((byte) '-');
+            scaled = -scaled;
+        }
+        var integer = scaled / SCALE[decimals];
+        digits(integer);
+        if (decimals > 0) {
+            put((byte) '.');
+            var fraction = scaled % SCALE[decimals];
+            for (var scale = SCALE[decimals - 1]; scale > 0; scale /= 10) {
+                put((byte) ('0' + fraction / scale % 10));
+            }
+        }
+        return this;
+    }
+
+    // Rectangle added to the current path, painted later by a single operator
+    PDFContent rect(float x, float y, float w, float h) throws IOException {
+        number(x, 2).put((byte) ' ');
+        number(y, 2).put((byte) ' ');
+        number(w, 2).put((byte) ' ');
+        number(h, 2).put((byte) ' ');
+        return text("re\n");
+    }
+
+    PDFContent line(float x0, float y0, float x1, float y1) throws IOException {
+        number(x0, 2).put((byte) ' ');
+        number(y0, 2).text(" m ");
+        number(x1, 2).put((byte) ' ');
+        return number(y1, 2).text(" l\n");
+    }
+
+    PDFContent translate(float x, float y) throws IOException {
+        text("1 0 0 1 ").number(x, 2).put((byte) ' ');
+        return number(y, 2).text(" cm\n");
+    }
+
+    // "w 0 0 h x y cm", maps the unit square of an image onto the given rectangle
+    PDFContent scale(float w, float h, float x, float y) throws IOException {
+        number(w, 2).text(" 0 0 ").number(h, 2).put((byte) ' ');
+        number(x, 2).put((byte) ' ');
+        return number(y, 2).text(" cm\n");
+    }
+
+    PDFContent drawXObject(String name) throws IOException {
+        return text("/").text(name).text(" Do\n");
+    }
+
+    PDFContent fillColor(int rgb) throws IOException {
+        return color(rgb).text("rg\n");
+    }
+
+    PDFContent moveText(float x, float y) throws IOException {
+        number(x, 2).put((byte) ' ');
+        return number(y, 2).text(" Td\n");
+    }
+
+    PDFContent font(float size) throws IOException {
+        return text("/F1 ").number(size, 1).text(" Tf\n");
+    }
+
+    PDFContent showText(String s) throws IOException {
+        return text("(").text(s).text(") Tj\n");
+    }
+
+    void flush() throws IOException {
+        if (target == null || count == 0) return;
+        target.write(buffer, 0, count);
+        count = 0;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, count);
+    }
+
+    private PDFContent color(int rgb) throws IOException {
+        number(((rgb >> 16) & 0xFF) / 255f, 3).put((byte) ' ');
+        number(((rgb >> 8) & 0xFF) / 255f, 3).put((byte) ' ');
+        return number((rgb & 0xFF) / 255f, 3).put((byte) ' ');
+    }
+
+    private void digits(long value) throws IOException {
+        if (value >= 10) digits(value / 10);
+        put((byte) ('0' + value % 10));
+    }
+
+    private PDFContent put(byte b) throws IOException {
+        if (count == buffer.length) {
+            if (target != null) flush();
+            else buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        buffer[count++] = b;
+        return this;
+    }
+}
@@ -1,44 +1,142 @@
 package artcreator.creator.impl;
 
 import artcreator.domain.ArtworkConfig;
+import artcreator.domain.CellGrid;
 import artcreator.domain.OutputSize;
 import artcreator.domain.Template;
 
-import java.awt.*;
-import java.awt.image.BufferedImage;
 import java.io.*;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinTask;
 
 public class PDFGenerator {
     private static final float MM_TO_POINTS = 72f / 25.4f;
     private static final float PAGE_WIDTH = 595.28f;  // A4 width in points
     private static final float PAGE_HEIGHT = 841.89f; // A4 height in points
     private static final float MARGIN = 20 * MM_TO_POINTS;
+    private static final String PREVIEW = "Preview";
+
+    private final boolean compress;
+    private final boolean imageBaseLayer;
+    private final Tiles tiles;
+    // Encoded grid pages of the last exported grid, filled only when rendering on the pool.
+    // Re-exports after a mode or output size change only render the title and instruction pages
+    // and pages of a tiling not seen before.
+    private final Map<PageKey, RenderedPage> pageCache = new ConcurrentHashMap<>();
+    private volatile PreviewImage previewCache;
+
+    public PDFGenerator() {
+        this(true, false);
+    }
+
+    public PDFGenerator(boolean compress) {
+        this(compress, false);
+    }
+
+    // Without compression content streams are written as plain text, page by page. With
+    // imageBaseLayer the grid pages paint cell colors from the embedded preview image and only
+    // lines and codes stay vector graphics.
+    public PDFGenerator(boolean compress, boolean imageBaseLayer) {
+        this(compress, imageBaseLayer, Tiles.shared());
+    }
 
+    // Renders grid pages on its own pool of the given size; 1 keeps everything on the calling thread
+    // and streams each page into the output instead of holding it.
+    public PDFGenerator(boolean compress, boolean imageBaseLayer, int parallelism) {
+        this(compress, imageBaseLayer, parallelism > 1 ? new Tiles(parallelism) : Tiles.SEQUENTIAL);
+    }
+
+    private PDFGenerator(boolean compress, boolean imageBaseLayer, Tiles tiles) {
+        this.compress = compress;
+        this.imageBaseLayer = imageBaseLayer;
+        this.tiles = tiles;
+    }
+
+    // Fails like the facade's exports when no config has been applied yet.
     public void generate(Template template, File outputFile) throws IOException {
-        var config = template.getConfig();
-        var image = template.getDisplayImage();
-        var palette = ColorQuantizer.getPalette(image, config.getColorCount());
+        var grid = template.getCellGrid();
+        if (grid == null) throw new IllegalStateException("No image to export");
+        generate(grid, template.getConfig(), outputFile);
+    }
+
+    public void generate(CellGrid grid, ArtworkConfig config, File outputFile) throws IOException {
+        try (var channel = FileChannel.open(outputFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            generate(grid, config, channel);
+        }
+    }
+
+    // Every finished page is written and flushed to the stream; the stream is not closed.
+    public void generate(CellGrid grid, ArtworkConfig config, OutputStream out) throws IOException {
+        var channel = Channels.newChannel(out);
+        generate(grid, config, new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                var written = channel.write(src);
+                out.flush();
+                return written;
+            }
+
+            @Override
+            public boolean isOpen() { return channel.isOpen(); }
+
+            @Override
+            public void close() {}
+        });
+    }
+
+    // Every finished page is written to the channel; the channel is not closed.
+    public void generate(CellGrid grid, ArtworkConfig config, WritableByteChannel channel) throws IOException {
+        var writer = new PDFWriter(channel, compress);
+        var hasPreview = writePreviewImage(writer, grid);
 
-        try (var out = new FileOutputStream(outputFile)) {
-            var writer = new PDFWriter(out);
+        // Title page
+        writeTitlePage(writer, grid, config, hasPreview);
 
-            // Title page
-            writeTitlePage(writer, config);
+        // Instructions page with legend
+        writeInstructionsPage(writer, grid, config);
 
-            // Instructions page with legend
-            writeInstructionsPage(writer, image, config, palette);
+        // Grid pages
+        writeGridPages(writer, grid, config);
 
-            // Grid pages
-            writeGridPages(writer, image, config, palette);
+        writer.finish();
+    }
+
+    // Complete cells as one indexed image, 1 byte per cell
+    private boolean writePreviewImage(PDFWriter writer, CellGrid grid) throws IOException {
+        var gridW = grid.getImageWidth() / grid.getPixelSize();
+        var gridH = grid.getImageHeight() / grid.getPixelSize();
+        if (gridW == 0 || gridH == 0) return false;
 
-            writer.finish();
+        var palette = new int[grid.getPaletteSize()];
+        for (var i = 0; i < palette.length; i++) {
+            palette[i] = grid.getPaletteRGB(i);
+        }
+        var cached = previewCache;
+        if (cached == null || !cached.grid().equals(grid)) {
+            var indices = new byte[gridW * gridH];
+            for (var y = 0; y < gridH; y++) {
+                for (var x = 0; x < gridW; x++) {
+                    indices[y * gridW + x] = (byte) grid.getIndex(x, y);
+                }
+            }
+            previewCache = cached = new PreviewImage(grid, PDFWriter.deflate(indices));
         }
+        writer.addIndexedImage(PREVIEW, gridW, gridH, palette, cached.deflated());
+        return true;
     }
 
-    private void writeTitlePage(PDFWriter writer, ArtworkConfig config) throws IOException {
+    private record PreviewImage(CellGrid grid, byte[] deflated) {}
+
+    // Pixel size and colors are those of the grid, which may predate later config edits.
+    private void writeTitlePage(PDFWriter writer, CellGrid grid, ArtworkConfig config, boolean preview) throws IOException {
         var content = new StringBuilder();
         var y = PAGE_HEIGHT - MARGIN;
 
@@ -54,21 +152,34 @@ public class PDFGenerator {
         content.append("BT\n");
         content.append("/F1 12 Tf\n");
         content.append(String.format(Locale.US, "%.2f %.2f Td\n", MARGIN, y));
-        content.append("(Pixelgroesse: " + config.getPixelSize() + ") Tj\n");
+        content.append("(Pixelgroesse: " + grid.getPixelSize() + ") Tj\n");
         content.append("0 -18 Td\n");
-        content.append("(Farben: " + config.getColorCount() + ") Tj\n");
+        content.append("(Farben: " + grid.getPaletteSize() + ") Tj\n");
         content.append("0 -18 Td\n");
         content.append("(Modus: " + (config.isMode3D() ? "3D" : "2D") + ") Tj\n");
         content.append("0 -18 Td\n");
         content.append("(Ausgabe: " + config.getOutputSize() + ") Tj\n");
         content.append("ET\n");
 
+        // Preview of the finished artwork, fitted into the rest of the page
+        if (preview) {
+            var gridW = grid.getImageWidth() / grid.getPixelSize();
+            var gridH = grid.getImageHeight() / grid.getPixelSize();
+            var top = y - 3 * 18 - 30;
+            var scale = Math.min((PAGE_WIDTH - 2 * MARGIN) / gridW, (top - MARGIN) / gridH);
+            var w = gridW * scale;
+            var h = gridH * scale;
+            content.append("q\n");
+            content.append(String.format(Locale.US, "%.2f 0 0 %.2f %.2f %.2f cm\n", w, h, (PAGE_WIDTH - w) / 2, top - h));
+            content.append("/" + PREVIEW + " Do\n");
+            content.append("Q\n");
+        }
+
         writer.addPage(content.toString());
     }
 
-    private void writeInstructionsPage(PDFWriter writer, BufferedImage image, ArtworkConfig config,
-                                       List<Color> palette) throws IOException {
-        var colorCounts = countColors(image, palette, config.getPixelSize());
+    private void writeInstructionsPage(PDFWriter writer, CellGrid grid, ArtworkConfig config) throws IOException {
+        var colorCounts = grid.countCells();
         var content = new StringBuilder();
         var y = PAGE_HEIGHT - MARGIN;
 
@@ -81,10 +192,9 @@ public class PDFGenerator {
         y -= 50;
 
         // Legend table
-        var colorIndex = 0;
-        for (var entry : colorCounts.entrySet()) {
-            var color = entry.getKey();
-            var count = entry.getValue();
+        for (var colorIndex = 0; colorIndex < colorCounts.length; colorIndex++) {
+            var color = grid.getPaletteColor(colorIndex);
+            var count = colorCounts[colorIndex];
             var code = getColorCode(colorIndex);
 
             // Color swatch
@@ -106,13 +216,12 @@ public class PDFGenerator {
             content.append("ET\n");
 
             y -= 22;
-            colorIndex++;
             if (y < MARGIN + 100) break;
         }
 
         // 3D mode: add stick count
         if (config.isMode3D()) {
-            var totalPixels = colorCounts.values().stream().mapToInt(Integer::intValue).sum();
+            var totalPixels = Arrays.stream(colorCounts).sum();
             y -= 10;
             content.append("BT\n");
             content.append("/F1 12 Tf\n");
@@ -148,15 +257,15 @@ public class PDFGenerator {
         writer.addPage(content.toString());
     }
 
-    private void writeGridPages(PDFWriter writer, BufferedImage image, ArtworkConfig config,
-                                List<Color> palette) throws IOException {
+    private void writeGridPages(PDFWriter writer, CellGrid grid, ArtworkConfig config) throws IOException {
         var outputSize = config.getOutputSize();
-        var pixelSize = config.getPixelSize();
-        var gridW = image.getWidth() / pixelSize;
-        var gridH = image.getHeight() / pixelSize;
+        // Only complete cells go on the template; partial edge cells are left out.
+        var gridW = grid.getImageWidth() / grid.getPixelSize();
+        var gridH = grid.getImageHeight() / grid.getPixelSize();
 
+        var pages = new ArrayList<GridPage>();
         if (outputSize == OutputSize.A4) {
-            writeSingleGridPage(writer, image, config, palette, gridW, gridH, 0, 0, gridW, gridH, 1, 1);
+            pages.add(new GridPage(0, 0, gridW, gridH, 1, 1));
         } else {
             var tilesX = (int) Math.ceil(outputSize.getWidthMM() / (double) OutputSize.A4.getWidthMM());
             var tilesY = (int) Math.ceil(outputSize.getHeightMM() / (double) OutputSize.A4.getHeightMM());
@@ -167,215 +276,207 @@ public class PDFGenerator {
 
             for (var ty = 0; ty < tilesY; ty++) {
                 for (var tx = 0; tx < tilesX; tx++) {
-                    writeSingleGridPage(writer, image, config, palette, gridW, gridH,
-                            tx * cellsPerTileX, ty * cellsPerTileY,
-                            cellsPerTileX, cellsPerTileY, pageNum, totalPages);
+                    pages.add(new GridPage(tx * cellsPerTileX, ty * cellsPerTileY,
+                            cellsPerTileX, cellsPerTileY, pageNum, totalPages));
                     pageNum++;
                 }
             }
         }
+
+        // On a single thread every page is streamed into the file and deflated on the way, so no
+        // page is held in memory and none is cached.
+        if (tiles.parallelism() == 1) {
+            for (var page : pages) {
+                CancellationToken.checkCancelled();
+                var content = writer.beginPage();
+                var glyphs = writeSingleGridPage(content, grid, gridW, gridH, page);
+                writer.endPage(content);
+                addGlyphForms(writer, grid, cellSize(page, gridW, gridH), glyphs);
+            }
+            return;
+        }
+
+        pageCache.keySet().removeIf(key -> !key.grid().equals(grid));
+
+        // Pages are independent: they are rendered and encoded on the pool while this thread
+        // appends finished pages in page order. This trades memory for speed: up to maxInFlight
+        // encoded pages are held at once, and the page cache keeps every page of the last grid.
+        var maxInFlight = tiles.parallelism() * 2;
+        var inFlight = new ArrayDeque<ForkJoinTask<RenderedPage>>();
+        var next = 0;
+        try {
+            while (next < pages.size() || !inFlight.isEmpty()) {
+                while (next < pages.size() && inFlight.size() < maxInFlight) {
+                    var page = pages.get(next++);
+                    var key = new PageKey(grid, page);
+                    inFlight.add(tiles.submit(() -> cachedGridPage(key, writer, grid, gridW, gridH)));
+                }
+                CancellationToken.checkCancelled();
+                var rendered = inFlight.remove().join();
+                writer.addEncodedPage(rendered.stream());
+                addGlyphForms(writer, grid, rendered.cellSize(), rendered.glyphs());
+            }
+        } catch (UncheckedIOException e) {
+            // join() may rethrow a copy made on this thread, so the exception from the worker is
+            // kept as the cause rather than unwrapped
+            throw new IOException(e.getCause().getMessage(), e);
+        } finally {
+            inFlight.forEach(task -> task.cancel(false));
+        }
     }
 
-    private void writeSingleGridPage(PDFWriter writer, BufferedImage image, ArtworkConfig config,
-                                     List<Color> palette, int gridW, int gridH,
-                                     int startCellX, int startCellY, int cellsW, int cellsH,
-                                     int pageNum, int totalPages) throws IOException {
-        var content = new StringBuilder();
+    private RenderedPage cachedGridPage(PageKey key, PDFWriter writer, CellGrid grid, int gridW, int gridH) {
+        var rendered = pageCache.get(key);
+        if (rendered == null) {
+            rendered = renderGridPage(writer, grid, gridW, gridH, key.page());
+            pageCache.put(key, rendered);
+        }
+        return rendered;
+    }
+
+    private RenderedPage renderGridPage(PDFWriter writer, CellGrid grid, int gridW, int gridH, GridPage page) {
+        var content = new PDFContent();
+        try {
+            var glyphs = writeSingleGridPage(content, grid, gridW, gridH, page);
+            return new RenderedPage(writer.encode(content.toByteArray()), cellSize(page, gridW, gridH), glyphs);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private record GridPage(int startCellX, int startCellY, int cellsW, int cellsH, int pageNum, int totalPages) {}
+
+    private record RenderedPage(byte[] stream, float cellSize, boolean[] glyphs) {}
+
+    // The grid is compared by content, so a hash collision cannot hand out another grid's pages.
+    private record PageKey(CellGrid grid, GridPage page) {}
+
+    private static float cellSize(GridPage page, int gridW, int gridH) {
         var pageWidth = PAGE_WIDTH - 2 * MARGIN;
         var pageHeight = PAGE_HEIGHT - 2 * MARGIN - 30;
-        var pixelSize = config.getPixelSize();
+        var actualCellsW = Math.min(page.cellsW(), gridW - page.startCellX());
+        var actualCellsH = Math.min(page.cellsH(), gridH - page.startCellY());
+        return Math.min(pageWidth / actualCellsW, pageHeight / actualCellsH);
+    }
 
-        var actualCellsW = Math.min(cellsW, gridW - startCellX);
-        var actualCellsH = Math.min(cellsH, gridH - startCellY);
+    // Returns which palette codes the page draws as glyph forms; the forms themselves are
+    // written by the caller, since only one thread may append objects.
+    private boolean[] writeSingleGridPage(PDFContent content, CellGrid grid, int gridW, int gridH,
+                                          GridPage page) throws IOException {
+        var pageWidth = PAGE_WIDTH - 2 * MARGIN;
+        var startCellX = page.startCellX();
+        var startCellY = page.startCellY();
 
-        var cellSize = Math.min(pageWidth / actualCellsW, pageHeight / actualCellsH);
+        var actualCellsW = Math.min(page.cellsW(), gridW - startCellX);
+        var actualCellsH = Math.min(page.cellsH(), gridH - startCellY);
+
+        var cellSize = cellSize(page, gridW, gridH);
         var gridWidthPx = cellSize * actualCellsW;
         var startX = MARGIN + (pageWidth - gridWidthPx) / 2;
         var startY = PAGE_HEIGHT - MARGIN - 30;
 
         // Page header
-        content.append("BT\n");
-        content.append("/F1 10 Tf\n");
-        content.append(String.format(Locale.US, "%.2f %.2f Td\n", MARGIN, PAGE_HEIGHT - MARGIN));
-        content.append("(Rastervorlage - Seite " + pageNum + "/" + totalPages + ") Tj\n");
-        content.append("ET\n");
-
-        // Draw grid
-        for (var gy = 0; gy < actualCellsH; gy++) {
-            for (var gx = 0; gx < actualCellsW; gx++) {
-                var imgX = (startCellX + gx) * pixelSize + pixelSize / 2;
-                var imgY = (startCellY + gy) * pixelSize + pixelSize / 2;
-
-                if (imgX >= image.getWidth()) imgX = image.getWidth() - 1;
-                if (imgY >= image.getHeight()) imgY = image.getHeight() - 1;
-
-                var pixelColor = new Color(image.getRGB(imgX, imgY));
-                var colorIndex = findNearestColorIndex(pixelColor, palette);
-                var code = getColorCode(colorIndex);
-                var c = palette.get(colorIndex);
-
-                var x = startX + gx * cellSize;
-                var y = startY - (gy + 1) * cellSize;
-
-                // Fill cell
-                content.append(String.format(Locale.US, "%.3f %.3f %.3f rg\n",
-                        c.getRed() / 255f, c.getGreen() / 255f, c.getBlue() / 255f));
-                content.append(String.format(Locale.US, "%.2f %.2f %.2f %.2f re f\n", x, y, cellSize, cellSize));
-
-                // Border
-                content.append("0.5 0.5 0.5 RG\n");
-                content.append(String.format(Locale.US, "%.2f %.2f %.2f %.2f re S\n", x, y, cellSize, cellSize));
-
-                // Code text if cell is large enough
-                if (cellSize > 10) {
-                    var brightness = (c.getRed() + c.getGreen() + c.getBlue()) / 3;
-                    var textColor = brightness > 128 ? "0 0 0" : "1 1 1";
-                    content.append("BT\n");
-                    content.append(textColor + " rg\n");
-                    content.append(String.format(Locale.US, "/F1 %.1f Tf\n", Math.min(8, cellSize * 0.6f)));
-                    content.append(String.format(Locale.US, "%.2f %.2f Td\n", x + cellSize * 0.2f, y + cellSize * 0.3f));
-                    content.append("(" + code + ") Tj\n");
-                    content.append("ET\n");
+        content.text("BT\n");
+        content.text("/F1 10 Tf\n");
+        content.moveText(MARGIN, PAGE_HEIGHT - MARGIN);
+        content.showText("Rastervorlage - Seite " + page.pageNum() + "/" + page.totalPages());
+        content.text("ET\n");
+
+        var gridBottom = startY - actualCellsH * cellSize;
+        if (imageBaseLayer) {
+            // Cell colors come from the preview image, placed so that the page's cells line up
+            // and clipped to them
+            content.text("q\n");
+            content.rect(startX, gridBottom, gridWidthPx, actualCellsH * cellSize);
+            content.text("W n\n");
+            content.scale(gridW * cellSize, gridH * cellSize,
+                    startX - startCellX * cellSize, startY + startCellY * cellSize - gridH * cellSize);
+            content.drawXObject(PREVIEW);
+            content.text("Q\n");
+        } else {
+            // Fills: runs of equal cells in a row become one rectangle. Each color on the page is
+            // set and filled once, with the page's cells scanned again per color so that no
+            // rectangles are buffered.
+            var present = new boolean[grid.getPaletteSize()];
+            for (var gy = 0; gy < actualCellsH; gy++) {
+                for (var gx = 0; gx < actualCellsW; gx++) present[grid.getIndex(startCellX + gx, startCellY + gy)] = true;
+            }
+            for (var colorIndex = 0; colorIndex < present.length; colorIndex++) {
+                if (!present[colorIndex]) continue;
+                content.fillColor(grid.getPaletteRGB(colorIndex));
+                for (var gy = 0; gy < actualCellsH; gy++) {
+                    var y = startY - (gy + 1) * cellSize;
+                    var gx = 0;
+                    while (gx < actualCellsW) {
+                        if (grid.getIndex(startCellX + gx, startCellY + gy) != colorIndex) {
+                            gx++;
+                            continue;
+                        }
+                        var runStart = gx;
+                        while (gx < actualCellsW && grid.getIndex(startCellX + gx, startCellY + gy) == colorIndex) gx++;
+                        content.rect(startX + runStart * cellSize, y, (gx - runStart) * cellSize, cellSize);
+                    }
                 }
+                content.text("f\n");
             }
         }
 
-        writer.addPage(content.toString());
-    }
+        // Grid lines: one per row and column boundary, stroked together
+        content.text("0.5 0.5 0.5 RG\n");
+        var gridRight = startX + gridWidthPx;
+        for (var gy = 0; gy <= actualCellsH; gy++) {
+            var y = startY - gy * cellSize;
+            content.line(startX, y, gridRight, y);
+        }
+        for (var gx = 0; gx <= actualCellsW; gx++) {
+            var x = startX + gx * cellSize;
+            content.line(x, gridBottom, x, startY);
+        }
+        content.text("S\n");
 
-    private Map<Color, Integer> countColors(BufferedImage image, List<Color> palette, int pixelSize) {
-        var counts = new LinkedHashMap<Color, Integer>();
-        for (var c : palette) counts.put(c, 0);
-
-        for (var y = 0; y < image.getHeight(); y += pixelSize) {
-            for (var x = 0; x < image.getWidth(); x += pixelSize) {
-                var imgX = x + pixelSize / 2;
-                var imgY = y + pixelSize / 2;
-                if (imgX >= image.getWidth()) imgX = image.getWidth() - 1;
-                if (imgY >= image.getHeight()) imgY = image.getHeight() - 1;
-                var pixel = new Color(image.getRGB(imgX, imgY));
-                var nearest = findNearest(pixel, palette);
-                counts.merge(nearest, 1, Integer::sum);
+        // Code text if cell is large enough, drawn with one glyph form per palette code
+        var glyphs = new boolean[grid.getPaletteSize()];
+        if (cellSize <= 10) return glyphs;
+        // Each cell is placed at its absolute position, the same one the grid lines use, so
+        // rounding cannot add up along a row
+        for (var gy = 0; gy < actualCellsH; gy++) {
+            var y = startY - (gy + 1) * cellSize;
+            for (var gx = 0; gx < actualCellsW; gx++) {
+                var colorIndex = grid.getIndex(startCellX + gx, startCellY + gy);
+                content.text("q\n");
+                content.translate(startX + gx * cellSize, y);
+                content.drawXObject(glyphName(colorIndex, cellSize));
+                content.text("Q\n");
+                glyphs[colorIndex] = true;
             }
         }
-        return counts;
-    }
-
-    private Color findNearest(Color target, List<Color> palette) {
-        return palette.stream()
-                .min(Comparator.comparingInt(c -> colorDistance(target, c)))
-                .orElse(target);
+        return glyphs;
     }
 
-    private int findNearestColorIndex(Color target, List<Color> palette) {
-        var minDist = Integer.MAX_VALUE;
-        var minIndex = 0;
-        for (var i = 0; i < palette.size(); i++) {
-            var dist = colorDistance(target, palette.get(i));
-            if (dist < minDist) {
-                minDist = dist;
-                minIndex = i;
-            }
+    private void addGlyphForms(PDFWriter writer, CellGrid grid, float cellSize, boolean[] glyphs) throws IOException {
+        for (var colorIndex = 0; colorIndex < glyphs.length; colorIndex++) {
+            if (!glyphs[colorIndex] || writer.hasXObject(glyphName(colorIndex, cellSize))) continue;
+            var rgb = grid.getPaletteRGB(colorIndex);
+            var brightness = (((rgb >> 16) & 0xFF) + ((rgb >> 8) & 0xFF) + (rgb & 0xFF)) / 3;
+            var content = new PDFContent();
+            content.text("BT\n");
+            content.text(brightness > 128 ? "0 0 0 rg\n" : "1 1 1 rg\n");
+            content.font(Math.min(8, cellSize * 0.6f));
+            content.moveText(cellSize * 0.2f, cellSize * 0.3f);
+            content.showText(getColorCode(colorIndex));
+            content.text("ET\n");
+            var size = (int) Math.ceil(cellSize);
+            writer.addForm(glyphName(colorIndex, cellSize), size, size, content.toByteArray());
         }
-        return minIndex;
     }
 
-    private int colorDistance(Color a, Color b) {
-        var dr = a.getRed() - b.getRed();
-        var dg = a.getGreen() - b.getGreen();
-        var db = a.getBlue() - b.getBlue();
-        return dr * dr + dg * dg + db * db;
+    // Pages with a different cell size get their own set of forms.
+    private static String glyphName(int colorIndex, float cellSize) {
+        return "G" + colorIndex + "_" + Math.round(cellSize * 100);
     }
 
     private String getColorCode(int index) {
         if (index < 26) return String.valueOf((char) ('A' + index));
         return String.valueOf((char) ('A' + index / 26 - 1)) + (char) ('A' + index % 26);
     }
-
-    private static class PDFWriter {
-        private final OutputStream out;
-        private final List<Long> objectOffsets = new ArrayList<>();
-        private final List<Integer> pageObjectIds = new ArrayList<>();
-        private long currentOffset = 0;
-        // Reserved: 1=Pages, 2=Font, 3=Catalog
-        private int nextObjectId = 4;
-
-        PDFWriter(OutputStream out) throws IOException {
-            this.out = out;
-            write("%PDF-1.4\n%\u00E2\u00E3\u00CF\u00D3\n");
-        }
-
-        void addPage(String content) throws IOException {
-            var contentBytes = content.getBytes(StandardCharsets.ISO_8859_1);
-
-            // Content stream object
-            var contentObjId = nextObjectId++;
-            objectOffsets.add(currentOffset);
-            write(contentObjId + " 0 obj\n");
-            write("<< /Length " + contentBytes.length + " >>\n");
-            write("stream\n");
-            out.write(contentBytes);
-            currentOffset += contentBytes.length;
-            write("\nendstream\n");
-            write("endobj\n");
-
-            // Page object
-            var pageObjId = nextObjectId++;
-            objectOffsets.add(currentOffset);
-            pageObjectIds.add(pageObjId);
-            write(pageObjId + " 0 obj\n");
-            write("<< /Type /Page /Parent 1 0 R /MediaBox [0 0 595.28 841.89] ");
-            write("/Contents " + contentObjId + " 0 R /Resources << /Font << /F1 2 0 R >> >> >>\n");
-            write("endobj\n");
-        }
-
-        void finish() throws IOException {
-            // Font object (object 2 - referenced by pages)
-            var fontOffset = currentOffset;
-            write("2 0 obj\n");
-            write("<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica /Encoding /WinAnsiEncoding >>\n");
-            write("endobj\n");
-
-            // Pages object (object 1)
-            var pagesOffset = currentOffset;
-            write("1 0 obj\n");
-            write("<< /Type /Pages /Kids [");
-            for (var pageId : pageObjectIds) {
-                write(pageId + " 0 R ");
-            }
-            write("] /Count " + pageObjectIds.size() + " >>\n");
-            write("endobj\n");
-
-            // Catalog object (object 3)
-            var catalogOffset = currentOffset;
-            write("3 0 obj\n");
-            write("<< /Type /Catalog /Pages 1 0 R >>\n");
-            write("endobj\n");
-
-            // Cross-reference table
-            var xrefOffset = currentOffset;
-            write("xref\n");
-            write("0 " + nextObjectId + "\n");
-            write("0000000000 65535 f \n");
-            write(String.format("%010d 00000 n \n", pagesOffset));
-            write(String.format("%010d 00000 n \n", fontOffset));
-            write(String.format("%010d 00000 n \n", catalogOffset));
-            for (var offset : objectOffsets) {
-                write(String.format("%010d 00000 n \n", offset));
-            }
-
-            // Trailer
-            write("trailer\n");
-            write("<< /Size " + nextObjectId + " /Root 3 0 R >>\n");
-            write("startxref\n");
-            write(xrefOffset + "\n");
-            write("%%EOF\n");
-        }
-
-        private void write(String s) throws IOException {
-            var bytes = s.getBytes(StandardCharsets.ISO_8859_1);
-            out.write(bytes);
-            currentOffset += bytes.length;
-        }
-    }
 }
@@ -0,0 +1,298 @@
+package artcreator.creator.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+// Writes through one large direct buffer into a channel. Offsets for the xref table are the
+// number of bytes handed to the channel plus the buffer position, so nothing is counted per token.
+final class PDFWriter {
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final boolean compress;
+    private final List<Long> objectOffsets = new ArrayList<>();
+    private final List<Integer> pageObjectIds = new ArrayList<>();
+    private final Map<String, Integer> xObjectIds = new LinkedHashMap<>();
+    private long flushed = 0;
+    // Reserved: 1=Pages, 2=Font, 3=Catalog, 4=Resources shared by all pages
+    private int nextObjectId = 5;
+    private int openContentId = -1;
+    private long openStreamStart;
+    private Deflater openDeflater;
+    private DeflaterOutputStream openDeflaterStream;
+
+    PDFWriter(WritableByteChannel channel, boolean compress) throws IOException {
+        this.channel = channel;
+        this.compress = compress;
+        write("%PDF-1.4\n%âãÏÓ\n");
+    }
+
+    void addPage(String content) throws IOException {
+        addPage(content.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    void addPage(byte[] content) throws IOException {
+        addEncodedPage(encode(content));
+    }
+
+    // Content that was already run through encode(), e.g. on a worker thread.
+    void addEncodedPage(byte[] stream) throws IOException {
+        addStream(stream, compress);
+    }
+
+    boolean hasXObject(String name) {
+        return xObjectIds.containsKey(name);
+    }
+
+    // Form XObject that every page can draw with "/<name> Do" through the shared resources.
+    void addForm(String name, int width, int height, byte[] content) throws IOException {
+        if (openContentId >= 0) throw new IllegalStateException("Page already open");
+        if (hasXObject(name)) throw new IllegalArgumentException("Duplicate XObject: " + name);
+        var stream = encode(content);
+        var formObjId = beginObject();
+        write("<< /Type /XObject /Subtype /Form /BBox [0 0 " + width + " " + height + "] ");
+        write("/Resources << /Font << /F1 2 0 R >> >> ");
+        writeStream(stream, compress);
+        xObjectIds.put(name, formObjId);
+    }
+
+    // Indexed-color image with one byte per pixel, passed through deflate() by the caller.
+    // Viewers scale it without smoothing, so every pixel stays a sharp block.
+    void addIndexedImage(String name, int width, int height, int[] palette, byte[] deflated) throws IOException {
+        if (openContentId >= 0) throw new IllegalStateException("Page already open");
+        if (hasXObject(name)) throw new IllegalArgumentException("Duplicate XObject: " + name);
+        if (palette.length == 0 || palette.length > 256) throw new IllegalArgumentException("Palette size: " + palette.length);
+        var lookup = new StringBuilder(palette.length * 6);
+        for (var rgb : palette) {
+            lookup.append(String.format("%06X", rgb & 0xFFFFFF));
+        }
+        var imageObjId = beginObject();
+        write("<< /Type /XObject /Subtype /Image /Width " + width + " /Height " + height + " ");
+        write("/ColorSpace [/Indexed /DeviceRGB " + (palette.length - 1) + " <" + lookup + ">] ");
+        write("/BitsPerComponent 8 /Interpolate false ");
+        writeStream(deflated, true);
+        xObjectIds.put(name, imageObjId);
+    }
+
+    // Safe to call from any thread.
+    byte[] encode(byte[] content) {
+        return compress ? deflate(content) : content;
+    }
+
+    static byte[] deflate(byte[] content) {
+        var deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(content);
+            deflater.finish();
+            var out = new ByteArrayOutputStream(Math.max(64, content.length / 8));
+            var buffer = new byte[1 << 14];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    // Starts a page whose content is streamed straight into the file, deflated on the way when
+    // compressing. Its /Length is an indirect object written after the stream, once the length is known.
+    PDFContent beginPage() throws IOException {
+        if (openContentId >= 0) throw new IllegalStateException("Page already open");
+        openContentId = nextObjectId;
+        beginObject();
+        write("<< /Length " + (openContentId + 1) + " 0 R" + (compress ? " /Filter /FlateDecode" : "") + " >>\n");
+        write("stream\n");
+        openStreamStart = offset();
+        OutputStream sink = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                if (!buffer.hasRemaining()) PDFWriter.this.flush();
+                buffer.put((byte) b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                PDFWriter.this.write(b, off, len);
+            }
+        };
+        if (compress) {
+            openDeflater = new Deflater(Deflater.BEST_SPEED);
+            sink = openDeflaterStream = new DeflaterOutputStream(sink, openDeflater, 1 << 14);
+        }
+        return new PDFContent(sink);
+    }
+
+    void endPage(PDFContent content) throws IOException {
+        content.flush();
+        if (openDeflater != null) {
+            openDeflaterStream.finish();
+            openDeflater.end();
+            openDeflater = null;
+            openDeflaterStream = null;
+        }
+        var length = offset() - openStreamStart;
+        var contentObjId = openContentId;
+        openContentId = -1;
+        write("\nendstream\n");
+        write("endobj\n");
+
+        // Length object
+        beginObject();
+        write(length + "\n");
+        write("endobj\n");
+
+        writePageObject(contentObjId);
+    }
+
+    private void addStream(byte[] stream, boolean deflated) throws IOException {
+        if (openContentId >= 0) throw new IllegalStateException("Page already open");
+        var contentObjId = beginObject();
+        write("<< ");
+        writeStream(stream, deflated);
+
+        writePageObject(contentObjId);
+    }
+
+    // Rest of a stream object whose dictionary has been opened with "<< ".
+    private void writeStream(byte[] stream, boolean deflated) throws IOException {
+        write("/Length " + stream.length + (deflated ? " /Filter /FlateDecode" : "") + " >>\n");
+        write("stream\n");
+        write(stream, 0, stream.length);
+        write("\nendstream\n");
+        write("endobj\n");
+    }
+
+    private void writePageObject(int contentObjId) throws IOException {
+        var pageObjId = beginObject();
+        pageObjectIds.add(pageObjId);
+        write("<< /Type /Page /Parent 1 0 R /MediaBox [0 0 595.28 841.89] ");
+        write("/Contents " + contentObjId + " 0 R /Resources 4 0 R >>\n");
+        write("endobj\n");
+        // Finished pages go out right away, so streamed output starts before the export ends
+        flush();
+    }
+
+    void finish() throws IOException {
+        // Font object (object 2 - referenced by pages)
+        var fontOffset = offset();
+        write("2 0 obj\n");
+        write("<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica /Encoding /WinAnsiEncoding >>\n");
+        write("endobj\n");
+
+        // Resources object (object 4 - shared by all pages)
+        var resourcesOffset = offset();
+        write("4 0 obj\n");
+        write("<< /Font << /F1 2 0 R >>");
+        if (!xObjectIds.isEmpty()) {
+            write(" /XObject <<");
+            for (var form : xObjectIds.entrySet()) {
+                write(" /" + form.getKey() + " " + form.getValue() + " 0 R");
+            }
+            write(" >>");
+        }
+        write(" >>\n");
+        write("endobj\n");
+
+        // Pages object (object 1)
+        var pagesOffset = offset();
+        write("1 0 obj\n");
+        write("<< /Type /Pages /Kids [");
+        for (var pageId : pageObjectIds) {
+            write(pageId + " 0 R ");
+        }
+        write("] /Count " + pageObjectIds.size() + " >>\n");
+        write("endobj\n");
+
+        // Catalog object (object 3)
+        var catalogOffset = offset();
+        write("3 0 obj\n");
+        write("<< /Type /Catalog /Pages 1 0 R >>\n");
+        write("endobj\n");
+
+        // Cross-reference table
+        var xrefOffset = offset();
+        write("xref\n");
+        write("0 " + nextObjectId + "\n");
+        write("0000000000 65535 f \n");
+        writeXrefEntry(pagesOffset);
+        writeXrefEntry(fontOffset);
+        writeXrefEntry(catalogOffset);
+        writeXrefEntry(resourcesOffset);
+        for (var offset : objectOffsets) {
+            writeXrefEntry(offset);
+        }
+
+        // Trailer
+        write("trailer\n");
+        write("<< /Size " + nextObjectId + " /Root 3 0 R >>\n");
+        write("startxref\n");
+        write(xrefOffset + "\n");
+        write("%%EOF\n");
+        flush();
+    }
+
+    private int beginObject() throws IOException {
+        var id = nextObjectId++;
+        objectOffsets.add(offset());
+        write(id + " 0 obj\n");
+        return id;
+    }
+
+    // "nnnnnnnnnn 00000 n \n", the offset zero-padded to ten digits
+    private void writeXrefEntry(long offset) throws IOException {
+        if (buffer.remaining() < 20) flush();
+        var start = buffer.position();
+        for (var i = 9; i >= 0; i--) {
+            buffer.put(start + i, (byte) ('0' + offset % 10));
+            offset /= 10;
+        }
+        buffer.position(start + 10);
+        write(" 00000 n \n");
+    }
+
+    private long offset() {
+        return flushed + buffer.position();
+    }
+
+    private void write(String s) throws IOException {
+        for (var i = 0; i < s.length(); i++) {
+            if (!buffer.hasRemaining()) flush();
+            buffer.put((byte) s.charAt(i));
+        }
+    }
+
+    private void write(byte[] bytes, int off, int len) throws IOException {
+        if (len > buffer.remaining()) {
+            flush();
+            if (len > buffer.capacity()) {
+                drain(ByteBuffer.wrap(bytes, off, len));
+                return;
+            }
+        }
+        buffer.put(bytes, off, len);
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        drain(buffer);
+        buffer.clear();
+    }
+
+    private void drain(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            flushed += channel.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package artcreator.creator.impl;
+
+import java.util.Arrays;
+
+// Nearest-palette lookup memoized in an open-addressing table keyed by packed RGB, so each
+// distinct color is matched against the palette only once. Not thread-safe.
+final class PaletteIndex {
+    private static final int EMPTY = -1;
+    private static final int MAX_CAPACITY = 1 << 21;
+
+    private final int[] palette;
+    private final int[] red;
+    private final int[] green;
+    private final int[] blue;
+    private int[] keys;
+    private short[] values;
+    private int size;
+
+    PaletteIndex(int[] palette) {
+        this.palette = palette.clone();
+        red = new int[palette.length];
+        green = new int[palette.length];
+        blue = new int[palette.length];
+        for (var i = 0; i < palette.length; i++) {
+            red[i] = (palette[i] >> 16) & 0xFF;
+            green[i] = (palette[i] >> 8) & 0xFF;
+            blue[i] = palette[i] & 0xFF;
+        }
+        allocate(1 << 10);
+    }
+
+    int nearestColor(int rgb) { return palette[indexOf(rgb)]; }
+
+    int indexOf(int rgb) {
+        rgb &= 0xFFFFFF;
+        var mask = keys.length - 1;
+        var slot = hash(rgb) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == rgb) return values[slot];
+            slot = (slot + 1) & mask;
+        }
+
+        var index = findNearest(rgb);
+        if (2 * (size + 1) > keys.length) grow();
+        insert(rgb, (short) index);
+        return index;
+    }
+
+    private int findNearest(int rgb) {
+        var r = (rgb >> 16) & 0xFF;
+        var g = (rgb >> 8) & 0xFF;
+        var b = rgb & 0xFF;
+        if (Simd.ENABLED) return VectorKernels.nearest(red, green, blue, r, g, b);
+        return ScalarKernels.nearest(red, green, blue, r, g, b);
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new short[capacity];
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    // Past MAX_CAPACITY the table is restarted instead of growing without bound.
+    private void grow() {
+        var oldKeys = keys;
+        var oldValues = values;
+        allocate(Math.min(oldKeys.length * 2, MAX_CAPACITY));
+        if (keys.length == oldKeys.length) return;
+        for (var i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) insert(oldKeys[i], oldValues[i]);
+        }
+    }
+
+    private void insert(int rgb, short index) {
+        var mask = keys.length - 1;
+        var slot = hash(rgb) & mask;
+        while (keys[slot] != EMPTY) slot = (slot + 1) & mask;
+        keys[slot] = rgb;
+        values[slot] = index;
+        size++;
+    }
+
+    private static int hash(int rgb) {
+        var h = rgb * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -1,70 +1,211 @@
 package artcreator.creator.impl;
 
 import artcreator.domain.ArtworkConfig;
+import artcreator.domain.CellGrid;
+import artcreator.domain.SummedAreaTable;
 
-import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.util.List;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
 
 public class PixelationEngine {
+    // Smallest amount of work (pixels or cells) worth handing to another thread.
+    private static final int MIN_TILE_PIXELS = 1 << 16;
+    private static final int MIN_TILE_CELLS = 1 << 12;
+    // Source pixels decoded per band when a grid is streamed from a file
+    private static final long BAND_PIXELS = 1L << 22;
+
+    private final Tiles tiles;
+
+    public PixelationEngine() {
+        this.tiles = Tiles.shared();
+    }
+
+    // Runs on its own pool of the given size; 1 keeps everything on the calling thread.
+    public PixelationEngine(int parallelism) {
+        this.tiles = parallelism > 1 ? new Tiles(parallelism) : Tiles.SEQUENTIAL;
+    }
 
     public BufferedImage pixelate(BufferedImage original, int pixelSize) {
         return pixelateSimple(original, pixelSize);
     }
 
+    public BufferedImage pixelate(SummedAreaTable table, int pixelSize) {
+        return expand(averageCells(table, pixelSize), table.getWidth(), table.getHeight(), pixelSize);
+    }
+
+    public SummedAreaTable buildSummedAreaTable(BufferedImage original) {
+        return new SummedAreaTable(Rasters.pixels(original), original.getWidth(), original.getHeight());
+    }
+
     public BufferedImage pixelate(BufferedImage original, ArtworkConfig config) {
+        return createCellGrid(original, config).toImage();
+    }
+
+    // Palette extraction and mapping run on one average color per cell, weighted by the
+    // number of source pixels the cell covers.
+    public CellGrid createCellGrid(BufferedImage original, ArtworkConfig config) {
+        var cells = averageCells(original, config.getPixelSize());
+        return quantizeCells(cells, original.getWidth(), original.getHeight(), config);
+    }
+
+    // Same result as createCellGrid(original, config), but each block costs four table lookups.
+    public CellGrid createCellGrid(SummedAreaTable table, ArtworkConfig config) {
+        var cells = averageCells(table, config.getPixelSize());
+        return quantizeCells(cells, table.getWidth(), table.getHeight(), config);
+    }
+
+    // Same result as createCellGrid(image, config) for the image in the file, which is read in
+    // bands of whole cell rows. Only one band and the cell averages are ever in memory, so the
+    // source may be far larger than the heap. With a histogram palette, every band of cells goes
+    // into the histogram as soon as it is averaged.
+    public CellGrid createCellGrid(File source, ArtworkConfig config) throws IOException {
+        return createCellGrid(source, config, BAND_PIXELS);
+    }
+
+    CellGrid createCellGrid(File source, ArtworkConfig config, long bandPixels) throws IOException {
         var pixelSize = config.getPixelSize();
-        var colorCount = config.getColorCount();
+        try (var bands = ImageLoader.Bands.open(source)) {
+            var width = bands.width();
+            var height = bands.height();
+            var cols = cellCount(width, pixelSize);
+            var rows = cellCount(height, pixelSize);
+            var cells = new int[cols * rows];
+            var areas = cellAreas(width, height, pixelSize);
+            var histogram = config.getHistogramBits() != ColorQuantizer.EXACT
+                    ? new ColorHistogram.Builder(config.getHistogramBits()) : null;
+            var cellRowsPerBand = (int) Math.max(1, bandPixels / ((long) width * pixelSize));
+            bands.forEach(cellRowsPerBand * pixelSize, (pixels, y0, bandHeight) -> {
+                CancellationToken.checkCancelled();
+                var cy = y0 / pixelSize;
+                var bandCells = averageCells(pixels, width, bandHeight, pixelSize);
+                System.arraycopy(bandCells, 0, cells, cy * cols, bandCells.length);
+                if (histogram != null) histogram.add(cells, areas, cy * cols, cy * cols + bandCells.length);
+            });
+            var palette = histogram != null
+                    ? histogram.build().palette(config.getColorCount())
+                    : ColorQuantizer.palette(cells, areas, config.getColorCount(), ColorQuantizer.EXACT, tiles);
+            return toCellGrid(cells, palette, width, height, pixelSize);
+        }
+    }
 
-        var pixelated = pixelateSimple(original, pixelSize);
-        return ColorQuantizer.quantize(pixelated, colorCount);
+    private CellGrid quantizeCells(int[] cells, int width, int height, ArtworkConfig config) {
+        var pixelSize = config.getPixelSize();
+        var palette = ColorQuantizer.palette(cells, cellAreas(width, height, pixelSize),
+                config.getColorCount(), config.getHistogramBits(), tiles);
+        return toCellGrid(cells, palette, width, height, pixelSize);
     }
 
-    public List<Color> getPalette(BufferedImage image, int colorCount) {
-        return ColorQuantizer.getPalette(image, colorCount);
+    private CellGrid toCellGrid(int[] cells, int[] palette, int width, int height, int pixelSize) {
+        var indices = ColorQuantizer.mapToPalette(cells, palette, tiles);
+        return new CellGrid(cellCount(width, pixelSize), cellCount(height, pixelSize), pixelSize,
+                width, height, palette, indices);
     }
 
     private BufferedImage pixelateSimple(BufferedImage original, int pixelSize) {
-        var width = original.getWidth();
-        var height = original.getHeight();
-        var result = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-
-        for (var y = 0; y < height; y += pixelSize) {
-            for (var x = 0; x < width; x += pixelSize) {
-                var color = calculateAverageColor(original, x, y, pixelSize, pixelSize);
-                fillBlock(result, x, y, pixelSize, pixelSize, color, width, height);
+        var cells = averageCells(original, pixelSize);
+        return expand(cells, original.getWidth(), original.getHeight(), pixelSize);
+    }
+
+    // One packed RGB average per pixelSize x pixelSize block, row by row; edge blocks may be partial.
+    // Rows are streamed straight from the backing int[] into per-column channel sums. Tiles are
+    // bands of whole cell rows, so no two threads touch the same cell.
+    private int[] averageCells(BufferedImage original, int pixelSize) {
+        return averageCells(Rasters.pixels(original), original.getWidth(), original.getHeight(), pixelSize);
+    }
+
+    private int[] averageCells(int[] pixels, int width, int height, int pixelSize) {
+        var cols = cellCount(width, pixelSize);
+        var rows = cellCount(height, pixelSize);
+        var cells = new int[cols * rows];
+
+        tiles.forEach(rows, MIN_TILE_PIXELS / (width * pixelSize), (fromRow, toRow) -> {
+            var sumR = new int[cols];
+            var sumG = new int[cols];
+            var sumB = new int[cols];
+            for (var cy = fromRow; cy < toRow; cy++) {
+                var y0 = cy * pixelSize;
+                var y1 = Math.min(y0 + pixelSize, height);
+                Arrays.fill(sumR, 0);
+                Arrays.fill(sumG, 0);
+                Arrays.fill(sumB, 0);
+                for (var y = y0; y < y1; y++) {
+                    sumRow(pixels, y * width, width, pixelSize, sumR, sumG, sumB);
+                }
+                for (var cx = 0; cx < cols; cx++) {
+                    var count = (y1 - y0) * (Math.min(cx * pixelSize + pixelSize, width) - cx * pixelSize);
+                    cells[cy * cols + cx] = (sumR[cx] / count) << 16 | (sumG[cx] / count) << 8 | sumB[cx] / count;
+                }
             }
-        }
-        return result;
+        });
+        return cells;
     }
 
-    private Color calculateAverageColor(BufferedImage img, int startX, int startY, int sizeW, int sizeH) {
-        var totalR = 0L;
-        var totalG = 0L;
-        var totalB = 0L;
-        var count = 0;
-        var maxX = Math.min(startX + sizeW, img.getWidth());
-        var maxY = Math.min(startY + sizeH, img.getHeight());
-
-        for (var y = startY; y < maxY; y++) {
-            for (var x = startX; x < maxX; x++) {
-                var c = new Color(img.getRGB(x, y));
-                totalR += c.getRed();
-                totalG += c.getGreen();
-                totalB += c.getBlue();
-                count++;
+    private int[] averageCells(SummedAreaTable table, int pixelSize) {
+        var width = table.getWidth();
+        var height = table.getHeight();
+        var cols = cellCount(width, pixelSize);
+        var rows = cellCount(height, pixelSize);
+        var cells = new int[cols * rows];
+        tiles.forEach(rows, MIN_TILE_CELLS / cols, (fromRow, toRow) -> {
+            for (var cy = fromRow; cy < toRow; cy++) {
+                var y0 = cy * pixelSize;
+                var y1 = Math.min(y0 + pixelSize, height);
+                for (var cx = 0; cx < cols; cx++) {
+                    var x0 = cx * pixelSize;
+                    cells[cy * cols + cx] = table.averageRGB(x0, y0, Math.min(x0 + pixelSize, width), y1);
+                }
             }
+        });
+        return cells;
+    }
+
+    private static void sumRow(int[] pixels, int rowStart, int width, int pixelSize,
+                               int[] sumR, int[] sumG, int[] sumB) {
+        var vectorized = Simd.ENABLED && pixelSize >= VectorKernels.lanes();
+        for (int cx = 0, x0 = 0; x0 < width; cx++, x0 += pixelSize) {
+            var x1 = Math.min(x0 + pixelSize, width);
+            if (vectorized) VectorKernels.sumChannels(pixels, rowStart + x0, rowStart + x1, sumR, sumG, sumB, cx);
+            else ScalarKernels.sumChannels(pixels, rowStart + x0, rowStart + x1, sumR, sumG, sumB, cx);
         }
-        if (count == 0) return Color.BLACK;
-        return new Color((int)(totalR/count), (int)(totalG/count), (int)(totalB/count));
     }
 
-    private void fillBlock(BufferedImage img, int startX, int startY, int sizeW, int sizeH, Color color, int maxW, int maxH) {
-        var rgb = color.getRGB();
-        for (var dy = 0; dy < sizeH && (startY + dy) < maxH; dy++) {
-            for (var dx = 0; dx < sizeW && (startX + dx) < maxW; dx++) {
-                img.setRGB(startX + dx, startY + dy, rgb);
+    private int[] cellAreas(int width, int height, int pixelSize) {
+        var cols = cellCount(width, pixelSize);
+        var rows = cellCount(height, pixelSize);
+        var areas = new int[cols * rows];
+        for (var cy = 0; cy < rows; cy++) {
+            var h = Math.min(pixelSize, height - cy * pixelSize);
+            for (var cx = 0; cx < cols; cx++) {
+                areas[cy * cols + cx] = h * Math.min(pixelSize, width - cx * pixelSize);
             }
         }
+        return areas;
+    }
+
+    private BufferedImage expand(int[] cells, int width, int height, int pixelSize) {
+        var result = Rasters.newRgbImage(width, height);
+        var data = Rasters.data(result);
+        var cols = cellCount(width, pixelSize);
+        tiles.forEach(cellCount(height, pixelSize), MIN_TILE_PIXELS / (width * pixelSize), (fromRow, toRow) -> {
+            for (var cy = fromRow; cy < toRow; cy++) {
+                var y0 = cy * pixelSize;
+                var rowStart = y0 * width;
+                for (var cx = 0; cx < cols; cx++) {
+                    var x0 = cx * pixelSize;
+                    Arrays.fill(data, rowStart + x0, rowStart + Math.min(x0 + pixelSize, width), cells[cy * cols + cx]);
+                }
+                var y1 = Math.min(y0 + pixelSize, height);
+                for (var y = y0 + 1; y < y1; y++) {
+                    System.arraycopy(data, rowStart, data, y * width, width);
+                }
+            }
+        });
+        return result;
+    }
+
+    private static int cellCount(int length, int pixelSize) {
+        return (length + pixelSize - 1) / pixelSize;
     }
 }
@@ -0,0 +1,61 @@
+package artcreator.creator.impl;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+final class Rasters {
+    private Rasters() {}
+
+    // Row-major ARGB/RGB ints with stride == width. Plain TYPE_INT_RGB/TYPE_INT_ARGB images hand out
+    // their backing array (callers must not modify it), anything else is converted once.
+    // Only the low 24 bits are meaningful.
+    static int[] pixels(BufferedImage image) {
+        if (isPlainIntImage(image)) {
+            return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
+        var width = image.getWidth();
+        return image.getRGB(0, 0, width, image.getHeight(), null, 0, width);
+    }
+
+    // 64-bit FNV-1a style hash over size and the low 24 bits of every pixel. Non-int images are
+    // read a row at a time, so no full-size copy is made.
+    static long digest(BufferedImage image) {
+        var width = image.getWidth();
+        var height = image.getHeight();
+        var hash = 0xCBF29CE484222325L;
+        hash = (hash ^ width) * 0x100000001B3L;
+        hash = (hash ^ height) * 0x100000001B3L;
+        if (isPlainIntImage(image)) {
+            var pixels = data(image);
+            for (var i = 0; i < width * height; i++) hash = (hash ^ (pixels[i] & 0xFFFFFF)) * 0x100000001B3L;
+            return hash;
+        }
+        var row = new int[width];
+        for (var y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (var rgb : row) hash = (hash ^ (rgb & 0xFFFFFF)) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    static BufferedImage newRgbImage(int width, int height) {
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    }
+
+    static int[] data(BufferedImage rgbImage) {
+        return ((DataBufferInt) rgbImage.getRaster().getDataBuffer()).getData();
+    }
+
+    private static boolean isPlainIntImage(BufferedImage image) {
+        var type = image.getType();
+        if (type != BufferedImage.TYPE_INT_RGB && type != BufferedImage.TYPE_INT_ARGB) return false;
+        var raster = image.getRaster();
+        return raster.getDataBuffer() instanceof DataBufferInt buffer
+                && buffer.getNumBanks() == 1 && buffer.getOffset() == 0
+                && raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel model
+                && model.getScanlineStride() == image.getWidth()
+                && buffer.getSize() >= image.getWidth() * image.getHeight();
+    }
+}
@@ -0,0 +1,37 @@
+package artcreator.creator.impl;
+
+// Plain-loop counterparts of VectorKernels, with the same signatures and results.
+final class ScalarKernels {
+    private ScalarKernels() {}
+
+    // Channel sums of pixels[from, to) added to sumR/G/B[cell].
+    static void sumChannels(int[] pixels, int from, int to, int[] sumR, int[] sumG, int[] sumB, int cell) {
+        var r = 0; var g = 0; var b = 0;
+        for (var i = from; i < to; i++) {
+            var rgb = pixels[i];
+            r += (rgb >> 16) & 0xFF;
+            g += (rgb >> 8) & 0xFF;
+            b += rgb & 0xFF;
+        }
+        sumR[cell] += r;
+        sumG[cell] += g;
+        sumB[cell] += b;
+    }
+
+    // First palette entry with the smallest squared RGB distance.
+    static int nearest(int[] red, int[] green, int[] blue, int r, int g, int b) {
+        var minDist = Integer.MAX_VALUE;
+        var minIndex = 0;
+        for (var i = 0; i < red.length; i++) {
+            var dr = r - red[i];
+            var dg = g - green[i];
+            var db = b - blue[i];
+            var dist = dr * dr + dg * dg + db * db;
+            if (dist < minDist) {
+                minDist = dist;
+                minIndex = i;
+            }
+        }
+        return minIndex;
+    }
+}
@@ -0,0 +1,10 @@
+package artcreator.creator.impl;
+
+// The Vector API kernels are used only when the JVM runs with --add-modules jdk.incubator.vector;
+// without it VectorKernels is never loaded and the scalar loops run instead. Both give identical results.
+final class Simd {
+    static final boolean ENABLED = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+            && !"false".equals(System.getProperty("artcreator.simd"));
+
+    private Simd() {}
+}
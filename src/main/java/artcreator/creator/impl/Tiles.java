@@ -0,0 +1,141 @@
+package artcreator.creator.impl;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+
+// Splits index ranges (cell rows, pixel spans) into contiguous tiles and runs them on a
+// dedicated fork/join pool. Every tile writes only its own slice of the output and reductions
+// combine tiles in index order, so results do not depend on the parallelism.
+final class Tiles {
+    static final Tiles SEQUENTIAL = new Tiles(1);
+    // Size of the shared pool, defaults to the number of cores.
+    static final String PARALLELISM_PROPERTY = "artcreator.parallelism";
+
+    private static Tiles shared;
+
+    private final int parallelism;
+    private final ForkJoinPool pool;
+
+    Tiles(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+        this.pool = this.parallelism > 1 ? new ForkJoinPool(this.parallelism) : null;
+    }
+
+    static synchronized Tiles shared() {
+        if (shared == null) {
+            var cores = Runtime.getRuntime().availableProcessors();
+            shared = new Tiles(Integer.getInteger(PARALLELISM_PROPERTY, cores));
+        }
+        return shared;
+    }
+
+    int parallelism() { return parallelism; }
+
+    @FunctionalInterface
+    interface Range {
+        void run(int from, int to);
+    }
+
+    @FunctionalInterface
+    interface RangeResult<T> {
+        T run(int from, int to);
+    }
+
+    // Runs [0, count) in tiles of at least minTile items. A cancelled job stops before the next tile.
+    void forEach(int count, int minTile, Range range) {
+        var tile = tileSize(count, minTile, parallelism * 4);
+        var token = CancellationToken.current();
+        Range checked = (from, to) -> {
+            token.throwIfCancelled();
+            range.run(from, to);
+        };
+        if (pool == null || tile >= count) {
+            for (var from = 0; from < count; from += tile) {
+                checked.run(from, Math.min(count, from + tile));
+            }
+            return;
+        }
+        pool.invoke(new RangeAction(checked, 0, count, tile));
+    }
+
+    // Maps tiles of [0, count) to partial results and combines them left to right. At most
+    // one tile per thread, since partial results (e.g. histograms) can be large.
+    <T> T reduce(int count, int minTile, RangeResult<T> range, BinaryOperator<T> combine) {
+        var tile = tileSize(count, minTile, parallelism);
+        var token = CancellationToken.current();
+        RangeResult<T> checked = (from, to) -> {
+            token.throwIfCancelled();
+            return range.run(from, to);
+        };
+        if (pool == null || tile >= count) return checked.run(0, count);
+        return pool.invoke(new RangeReduction<>(checked, combine, 0, count, tile));
+    }
+
+    // Runs a single task on the pool; without a pool it has already finished on return.
+    <T> ForkJoinTask<T> submit(Callable<T> task) {
+        var token = CancellationToken.current();
+        if (pool != null) return pool.submit(() -> token.run(task));
+        var inline = ForkJoinTask.adapt(task);
+        inline.invoke();
+        return inline;
+    }
+
+    private static int tileSize(int count, int minTile, int tiles) {
+        return Math.max(Math.max(1, minTile), (count + tiles - 1) / tiles);
+    }
+
+    private static final class RangeAction extends RecursiveAction {
+        private final Range range;
+        private final int from;
+        private final int to;
+        private final int tile;
+
+        RangeAction(Range range, int from, int to, int tile) {
+            this.range = range;
+            this.from = from;
+            this.to = to;
+            this.tile = tile;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= tile) {
+                range.run(from, to);
+                return;
+            }
+            var mid = from + (to - from) / 2;
+            invokeAll(new RangeAction(range, from, mid, tile), new RangeAction(range, mid, to, tile));
+        }
+    }
+
+    private static final class RangeReduction<T> extends RecursiveTask<T> {
+        private final RangeResult<T> range;
+        private final BinaryOperator<T> combine;
+        private final int from;
+        private final int to;
+        private final int tile;
+
+        RangeReduction(RangeResult<T> range, BinaryOperator<T> combine, int from, int to, int tile) {
+            this.range = range;
+            this.combine = combine;
+            this.from = from;
+            this.to = to;
+            this.tile = tile;
+        }
+
+        @Override
+        protected T compute() {
+            if (to - from <= tile) return range.run(from, to);
+            var mid = from + (to - from) / 2;
+            var left = new RangeReduction<>(range, combine, from, mid, tile);
+            var right = new RangeReduction<>(range, combine, mid, to, tile);
+            right.fork();
+            var leftResult = left.compute();
+            return combine.apply(leftResult, right.join());
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package artcreator.creator.impl;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// Only touch this class when Simd.ENABLED is true.
+final class VectorKernels {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    private VectorKernels() {}
+
+    static int lanes() { return SPECIES.length(); }
+
+    // Channel sums of pixels[from, to) added to sumR/G/B[cell].
+    static void sumChannels(int[] pixels, int from, int to, int[] sumR, int[] sumG, int[] sumB, int cell) {
+        var r = IntVector.zero(SPECIES);
+        var g = IntVector.zero(SPECIES);
+        var b = IntVector.zero(SPECIES);
+        var i = from;
+        for (var bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            var v = IntVector.fromArray(SPECIES, pixels, i);
+            r = r.add(v.lanewise(VectorOperators.LSHR, 16).and(0xFF));
+            g = g.add(v.lanewise(VectorOperators.LSHR, 8).and(0xFF));
+            b = b.add(v.and(0xFF));
+        }
+        var sr = r.reduceLanes(VectorOperators.ADD);
+        var sg = g.reduceLanes(VectorOperators.ADD);
+        var sb = b.reduceLanes(VectorOperators.ADD);
+        for (; i < to; i++) {
+            sr += (pixels[i] >> 16) & 0xFF;
+            sg += (pixels[i] >> 8) & 0xFF;
+            sb += pixels[i] & 0xFF;
+        }
+        sumR[cell] += sr;
+        sumG[cell] += sg;
+        sumB[cell] += sb;
+    }
+
+    // First palette entry with the smallest squared RGB distance, palette entries spread over the lanes.
+    static int nearest(int[] red, int[] green, int[] blue, int r, int g, int b) {
+        var count = red.length;
+        var minDist = Integer.MAX_VALUE;
+        var minIndex = 0;
+        for (var i = 0; i < count; i += SPECIES.length()) {
+            var inRange = SPECIES.indexInRange(i, count);
+            var dr = IntVector.fromArray(SPECIES, red, i, inRange).sub(r);
+            var dg = IntVector.fromArray(SPECIES, green, i, inRange).sub(g);
+            var db = IntVector.fromArray(SPECIES, blue, i, inRange).sub(b);
+            var dist = dr.mul(dr).add(dg.mul(dg)).add(db.mul(db))
+                    .blend(Integer.MAX_VALUE, inRange.not());
+            var chunkMin = dist.reduceLanes(VectorOperators.MIN);
+            if (chunkMin < minDist) {
+                minDist = chunkMin;
+                minIndex = i + dist.eq(chunkMin).firstTrue();
+            }
+        }
+        return minIndex;
+    }
+}
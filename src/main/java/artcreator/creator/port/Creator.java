@@ -1,15 +1,30 @@
 package artcreator.creator.port;
 
 import artcreator.domain.ArtworkConfig;
+import artcreator.domain.CellGrid;
 import artcreator.domain.Template;
 
+import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.CompletableFuture;
 
+// Every operation runs as a job and completes its future with the result; null or false means
+// the current state does not allow it. Cancelling a future stops its job cooperatively.
 public interface Creator {
-    void loadImage(File file);
-    void pixelate(int pixelSize);
-    void applyConfig(ArtworkConfig config);
-    void generatePDF(File outputFile);
-    void reset();
+    CompletableFuture<Boolean> loadImage(File file);
+    CompletableFuture<BufferedImage> pixelate(int pixelSize);
+    // A newer call cancels a pending or running older one.
+    CompletableFuture<CellGrid> applyConfig(ArtworkConfig config);
+    // Fast approximation of applyConfig, about width x height, that leaves the template alone.
+    // A newer call cancels an older one.
+    CompletableFuture<BufferedImage> preview(ArtworkConfig config, int width, int height);
+    CompletableFuture<Boolean> generatePDF(File outputFile);
+    // Completes exceptionally if writing fails, or with IllegalStateException if there is
+    // nothing to export.
+    CompletableFuture<Void> generatePDF(OutputStream out);
+    CompletableFuture<Void> generatePDF(WritableByteChannel channel);
+    CompletableFuture<Void> reset();
     Template getTemplate();
 }
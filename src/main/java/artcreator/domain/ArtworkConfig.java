@@ -5,6 +5,8 @@ public class ArtworkConfig {
     private int colorCount = 16;
     private boolean mode3D = false;
     private OutputSize outputSize = OutputSize.A4;
+    // 0 = median cut over every color, 5/6 = over a 32^3/64^3 color histogram (faster, coarser)
+    private int histogramBits = 0;
 
     public int getPixelSize() { return pixelSize; }
     public void setPixelSize(int pixelSize) { this.pixelSize = Math.max(2, Math.min(50, pixelSize)); }
@@ -21,4 +23,21 @@ public class ArtworkConfig {
 
     public OutputSize getOutputSize() { return outputSize; }
     public void setOutputSize(OutputSize outputSize) { this.outputSize = outputSize; }
+
+    public int getHistogramBits() { return histogramBits; }
+    public void setHistogramBits(int histogramBits) {
+        if (histogramBits == 0 || histogramBits == 5 || histogramBits == 6) {
+            this.histogramBits = histogramBits;
+        }
+    }
+
+    public ArtworkConfig copy() {
+        var copy = new ArtworkConfig();
+        copy.pixelSize = pixelSize;
+        copy.colorCount = colorCount;
+        copy.mode3D = mode3D;
+        copy.outputSize = outputSize;
+        copy.histogramBits = histogramBits;
+        return copy;
+    }
 }
@@ -0,0 +1,130 @@
+package artcreator.domain;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.util.Arrays;
+
+// Quantized pixelation result: one palette index per cell, row-major. Edge cells may cover
+// fewer than pixelSize source pixels when the image size is not a multiple of it.
+public final class CellGrid {
+    private final int width;
+    private final int height;
+    private final int pixelSize;
+    private final int imageWidth;
+    private final int imageHeight;
+    private final int[] palette;
+    private final byte[] indices;
+    private final long contentHash;
+
+    public CellGrid(int width, int height, int pixelSize, int imageWidth, int imageHeight,
+                    int[] palette, byte[] indices) {
+        if (palette.length > 256) throw new IllegalArgumentException("Palette too large: " + palette.length);
+        if (indices.length != width * height) throw new IllegalArgumentException("Cell count mismatch");
+        this.width = width;
+        this.height = height;
+        this.pixelSize = pixelSize;
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
+        this.palette = palette.clone();
+        this.indices = indices;
+        this.contentHash = hash();
+    }
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public int getPixelSize() { return pixelSize; }
+    public int getImageWidth() { return imageWidth; }
+    public int getImageHeight() { return imageHeight; }
+
+    public int getPaletteSize() { return palette.length; }
+    public int getPaletteRGB(int index) { return palette[index]; }
+    public Color getPaletteColor(int index) { return new Color(palette[index]); }
+
+    public int getIndex(int x, int y) { return indices[y * width + x] & 0xFF; }
+    public int getRGB(int x, int y) { return palette[getIndex(x, y)]; }
+
+    public int[] countCells() {
+        var counts = new int[palette.length];
+        for (var index : indices) counts[index & 0xFF]++;
+        return counts;
+    }
+
+    // 64-bit FNV-1a style hash over geometry, palette and indices. Used to recognize an
+    // unchanged grid, e.g. for reusing exported pages.
+    public long contentHash() { return contentHash; }
+
+    // Same geometry, palette and indices. The hash only rules out most unequal grids quickly,
+    // so caches keyed by grid never mix up two grids whose hashes collide.
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CellGrid other) || contentHash != other.contentHash) return false;
+        return width == other.width && height == other.height && pixelSize == other.pixelSize
+                && imageWidth == other.imageWidth && imageHeight == other.imageHeight
+                && Arrays.equals(palette, other.palette) && Arrays.equals(indices, other.indices);
+    }
+
+    @Override
+    public int hashCode() { return Long.hashCode(contentHash); }
+
+    // Computed in the constructor, so every thread sees it without synchronization.
+    private long hash() {
+        var hash = 0xCBF29CE484222325L;
+        for (var value : new int[] {width, height, pixelSize, imageWidth, imageHeight, palette.length}) {
+            hash = (hash ^ value) * 0x100000001B3L;
+        }
+        for (var rgb : palette) hash = (hash ^ rgb) * 0x100000001B3L;
+        for (var index : indices) hash = (hash ^ index) * 0x100000001B3L;
+        return hash;
+    }
+
+    public BufferedImage toImage() {
+        var result = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_RGB);
+        var data = ((DataBufferInt) result.getRaster().getDataBuffer()).getData();
+        for (var cy = 0; cy < height; cy++) {
+            var y0 = cy * pixelSize;
+            var rowStart = y0 * imageWidth;
+            for (var cx = 0; cx < width; cx++) {
+                var x0 = cx * pixelSize;
+                Arrays.fill(data, rowStart + x0, rowStart + Math.min(x0 + pixelSize, imageWidth), getRGB(cx, cy));
+            }
+            var y1 = Math.min(y0 + pixelSize, imageHeight);
+            for (var y = y0 + 1; y < y1; y++) {
+                System.arraycopy(data, rowStart, data, y * imageWidth, imageWidth);
+            }
+        }
+        return result;
+    }
+
+    // Nearest-neighbour rendering at another size, e.g. a preview smaller than the image.
+    public BufferedImage toImage(int targetWidth, int targetHeight) {
+        var result = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        var data = ((DataBufferInt) result.getRaster().getDataBuffer()).getData();
+        var columns = new int[targetWidth];
+        for (var x = 0; x < targetWidth; x++) {
+            columns[x] = (int) ((long) x * imageWidth / targetWidth) / pixelSize;
+        }
+        for (var y = 0; y < targetHeight; y++) {
+            var cy = (int) ((long) y * imageHeight / targetHeight) / pixelSize;
+            var row = y * targetWidth;
+            for (var x = 0; x < targetWidth; x++) {
+                data[row + x] = getRGB(columns[x], cy);
+            }
+        }
+        return result;
+    }
+
+    // One indexed pixel per cell over the palette, e.g. for drawing the grid scaled without
+    // ever expanding it to image size.
+    public BufferedImage toCellImage() {
+        var colorModel = new IndexColorModel(8, palette.length, palette, 0, false, -1, DataBuffer.TYPE_BYTE);
+        var raster = Raster.createInterleavedRaster(new DataBufferByte(indices.clone(), indices.length),
+                width, height, width, 1, new int[] {0}, null);
+        return new BufferedImage(colorModel, raster, false, null);
+    }
+}
@@ -0,0 +1,69 @@
+package artcreator.domain;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+
+// Successive 2x2-averaged halvings of an image for display. Fitting the image into a window then
+// starts from the smallest level that is still large enough, so only one short step is left.
+public final class ImagePyramid {
+    private static final int MIN_SIZE = 64;
+
+    private final BufferedImage[] levels;
+
+    private ImagePyramid(BufferedImage[] levels) {
+        this.levels = levels;
+    }
+
+    public static ImagePyramid of(BufferedImage image) {
+        var levels = new ArrayList<BufferedImage>();
+        levels.add(image);
+        var current = image;
+        while (current.getWidth() / 2 >= MIN_SIZE && current.getHeight() / 2 >= MIN_SIZE) {
+            current = halve(current);
+            levels.add(current);
+        }
+        return new ImagePyramid(levels.toArray(new BufferedImage[0]));
+    }
+
+    public BufferedImage getBase() { return levels[0]; }
+    public int getLevelCount() { return levels.length; }
+    public BufferedImage getLevel(int level) { return levels[level]; }
+
+    // Smallest level that still covers the base image fitted into maxWidth x maxHeight.
+    public BufferedImage levelFor(int maxWidth, int maxHeight) {
+        var base = levels[0];
+        var scale = Math.min((double) maxWidth / base.getWidth(), (double) maxHeight / base.getHeight());
+        for (var i = levels.length - 1; i > 0; i--) {
+            var level = levels[i];
+            if (level.getWidth() >= base.getWidth() * scale && level.getHeight() >= base.getHeight() * scale) {
+                return level;
+            }
+        }
+        return base;
+    }
+
+    // Reads two source rows at a time, so any image type works without copying it whole.
+    private static BufferedImage halve(BufferedImage image) {
+        var width = image.getWidth() / 2;
+        var height = image.getHeight() / 2;
+        var sourceWidth = image.getWidth();
+        var result = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        var rows = new int[sourceWidth * 2];
+        var out = new int[width];
+        for (var y = 0; y < height; y++) {
+            image.getRGB(0, y * 2, sourceWidth, 2, rows, 0, sourceWidth);
+            for (var x = 0; x < width; x++) {
+                var a = rows[x * 2];
+                var b = rows[x * 2 + 1];
+                var c = rows[sourceWidth + x * 2];
+                var d = rows[sourceWidth + x * 2 + 1];
+                var r = ((a >> 16) & 0xFF) + ((b >> 16) & 0xFF) + ((c >> 16) & 0xFF) + ((d >> 16) & 0xFF);
+                var g = ((a >> 8) & 0xFF) + ((b >> 8) & 0xFF) + ((c >> 8) & 0xFF) + ((d >> 8) & 0xFF);
+                var bl = (a & 0xFF) + (b & 0xFF) + (c & 0xFF) + (d & 0xFF);
+                out[x] = (r + 2) / 4 << 16 | (g + 2) / 4 << 8 | (bl + 2) / 4;
+            }
+            result.setRGB(0, y, width, 1, out, 0, width);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,52 @@
+package artcreator.domain;
+
+// Integral image of an RGB raster, so the average of any block costs four lookups no matter
+// how large the block is. The three channels share one long per entry in 21-bit fields; the
+// entries wrap around, but the four-corner difference of a block is exact as long as no
+// channel sum of that block reaches 2^21 (blocks of up to 8224 pixels).
+public final class SummedAreaTable {
+    public static final int MAX_BLOCK_AREA = (1 << 21) / 255;
+
+    private static final int SHIFT_G = 21;
+    private static final int SHIFT_B = 42;
+    private static final long FIELD = (1L << 21) - 1;
+
+    private final int width;
+    private final int height;
+    private final long[] table;
+
+    // pixels are row-major RGB ints with stride == width; only the low 24 bits are read
+    public SummedAreaTable(int[] pixels, int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.table = new long[(width + 1) * (height + 1)];
+        var stride = width + 1;
+        for (var y = 0; y < height; y++) {
+            var rowSum = 0L;
+            var above = y * stride + 1;
+            var here = above + stride;
+            var source = y * width;
+            for (var x = 0; x < width; x++) {
+                var rgb = pixels[source + x];
+                rowSum += ((rgb >> 16) & 0xFF) | (long) ((rgb >> 8) & 0xFF) << SHIFT_G | (long) (rgb & 0xFF) << SHIFT_B;
+                table[here + x] = table[above + x] + rowSum;
+            }
+        }
+    }
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+
+    // Truncated average over [x0, x1) x [y0, y1) as packed 0xRRGGBB.
+    public int averageRGB(int x0, int y0, int x1, int y1) {
+        var count = (x1 - x0) * (y1 - y0);
+        if (count <= 0) return 0;
+        if (count > MAX_BLOCK_AREA) throw new IllegalArgumentException("Block too large: " + count);
+        var stride = width + 1;
+        var sum = table[y1 * stride + x1] - table[y0 * stride + x1] - table[y1 * stride + x0] + table[y0 * stride + x0];
+        var r = (int) (sum & FIELD);
+        var g = (int) ((sum >>> SHIFT_G) & FIELD);
+        var b = (int) ((sum >>> SHIFT_B) & FIELD);
+        return (r / count) << 16 | (g / count) << 8 | b / count;
+    }
+}
@@ -1,10 +1,18 @@
 package artcreator.domain;
 
 import java.awt.image.BufferedImage;
+import java.io.File;
 
 public class Template {
     private BufferedImage originalImage;
     private BufferedImage pixelatedImage;
+    // Read by the EDT while jobs replace them
+    private volatile CellGrid cellGrid;
+    private SummedAreaTable summedAreaTable;
+    private volatile ImagePyramid displayPyramid;
+    private File sourceFile;
+    private int sourceSubsampling = 1;
+    private long sourceDigest;
     private int lastPixelSize;
     private final ArtworkConfig config = new ArtworkConfig();
 
@@ -23,10 +31,52 @@ public class Template {
     public void setOriginalImage(BufferedImage image) {
         this.originalImage = image;
         this.pixelatedImage = null;
+        this.cellGrid = null;
+        this.summedAreaTable = null;
+        this.displayPyramid = null;
+        this.sourceFile = null;
+        this.sourceSubsampling = 1;
+        this.sourceDigest = 0;
+    }
+
+    // Set when the original image is a subsampled stand-in for a file too large to keep in
+    // memory. Grids are then streamed from the file at full resolution.
+    public File getSourceFile() { return sourceFile; }
+    public int getSourceSubsampling() { return sourceSubsampling; }
+
+    public void setSource(File file, int subsampling) {
+        this.sourceFile = file;
+        this.sourceSubsampling = subsampling;
+    }
+
+    // Identifies the loaded source for cached results; 0 until computed.
+    public long getSourceDigest() { return sourceDigest; }
+    public void setSourceDigest(long digest) { this.sourceDigest = digest; }
+
+    // Built once per loaded image and reused for every pixel size.
+    public SummedAreaTable getSummedAreaTable() {
+        return summedAreaTable;
+    }
+
+    public void setSummedAreaTable(SummedAreaTable table) {
+        this.summedAreaTable = table;
     }
 
     public void setPixelatedImage(BufferedImage image) {
         this.pixelatedImage = image;
+        this.cellGrid = null;
+        this.displayPyramid = null;
+    }
+
+    public CellGrid getCellGrid() {
+        return cellGrid;
+    }
+
+    // The display raster is expanded from the grid only when someone asks for it.
+    public void setCellGrid(CellGrid grid) {
+        this.cellGrid = grid;
+        this.pixelatedImage = null;
+        this.displayPyramid = null;
     }
 
     public void setLastPixelSize(int size) {
@@ -37,7 +87,20 @@ public class Template {
         return originalImage != null;
     }
 
+    // A grid is expanded on every call, not kept; the preview draws grids from their cells.
     public BufferedImage getDisplayImage() {
-        return pixelatedImage != null ? pixelatedImage : originalImage;
+        if (pixelatedImage != null) return pixelatedImage;
+        var grid = cellGrid;
+        return grid != null ? grid.toImage() : originalImage;
+    }
+
+    // Halvings of the display image for the preview. Set by the job that changed the image,
+    // before observers are told, and null while a grid is shown instead.
+    public ImagePyramid getDisplayPyramid() {
+        return displayPyramid;
+    }
+
+    public void setDisplayPyramid(ImagePyramid pyramid) {
+        this.displayPyramid = pyramid;
     }
 }
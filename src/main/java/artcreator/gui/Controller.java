@@ -6,9 +6,12 @@ import artcreator.statemachine.port.Observer;
 import artcreator.statemachine.port.State;
 import artcreator.statemachine.port.Subject;
 
+import javax.swing.*;
 import java.awt.*;
 import java.io.File;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class Controller implements Observer {
     private final CreatorFrame view;
@@ -33,13 +36,28 @@ public class Controller implements Observer {
         var dir = dialog.getDirectory();
         var file = dialog.getFile();
         if (dir == null || file == null) return;
-        CompletableFuture.runAsync(() -> model.loadImage(new File(dir, file)));
+        var image = new File(dir, file);
+        report(model.loadImage(image), "Could not load " + image.getName());
     }
 
     public void onApply() {
         var config = new ArtworkConfig();
         view.getControlPanel().applyToConfig(config);
-        CompletableFuture.runAsync(() -> model.applyConfig(config));
+        report(model.applyConfig(config), "Apply failed");
+    }
+
+    // A quick approximation while the slider moves; the full result follows through Apply once
+    // it is released. Replaces any preview still in progress.
+    public void onPreview() {
+        var config = new ArtworkConfig();
+        view.getControlPanel().applyToConfig(config);
+        var previewPanel = view.getImagePreviewPanel();
+        var size = previewPanel.getDisplaySize();
+        var preview = model.preview(config, size.width, size.height);
+        preview.thenAccept(image -> {
+            if (image != null) SwingUtilities.invokeLater(() -> previewPanel.displayImage(image));
+        });
+        report(preview, "Preview failed");
     }
 
     public void onGeneratePDF() {
@@ -53,7 +71,19 @@ public class Controller implements Observer {
         if (dir == null || file == null) return;
 
         var outputFile = new File(dir, file.endsWith(".pdf") ? file : file + ".pdf");
-        CompletableFuture.runAsync(() -> model.generatePDF(outputFile));
+        report(model.generatePDF(outputFile), "Could not write " + outputFile.getName());
+    }
+
+    // Shows failed jobs, and those that reported false, on the EDT. Cancelled jobs were
+    // superseded on purpose and stay quiet.
+    private void report(CompletableFuture<?> job, String message) {
+        job.whenComplete((result, e) -> {
+            if (e instanceof CompletionException && e.getCause() != null) e = e.getCause();
+            if (e instanceof CancellationException || e == null && !Boolean.FALSE.equals(result)) return;
+            var detail = e == null ? message : message + ": " + e.getMessage();
+            SwingUtilities.invokeLater(() ->
+                    JOptionPane.showMessageDialog(view, detail, "Pixelator3D", JOptionPane.ERROR_MESSAGE));
+        });
     }
 
     @Override
@@ -39,7 +39,8 @@ public class CreatorFrame extends JFrame implements Observer {
         subject.attach(this);
 
         var controller = new Controller(this, subject, creator);
-        controlPanel = new ControlPanel(controller::onLoadImage, controller::onApply, controller::onGeneratePDF);
+        controlPanel = new ControlPanel(controller::onLoadImage, controller::onApply, controller::onGeneratePDF,
+                controller::onPreview);
         imagePreviewPanel = new ImagePreviewPanel();
 
         // Welcome view
@@ -57,7 +58,8 @@ public class CreatorFrame extends JFrame implements Observer {
         var helpPage = new ContentPage("How to Use Pixelator3D", null, """
                 1. Load Image: Click 'Load Image' to select an image file (JPG, PNG, GIF, BMP)
                 2. Configure: Set grid resolution, color count (8/16/32), and 2D/3D mode
-                3. Apply: Click 'Apply' to see the preview with your settings
+                3. Apply: Click 'Apply' to see the preview with your settings,
+                   or tick 'Live' to update it while you move the slider
                 4. Generate PDF: Click 'Generate PDF' to create building instructions
 
                 The PDF includes a material list, legend, and grid template.
@@ -100,7 +102,10 @@ public class CreatorFrame extends JFrame implements Observer {
                     cardLayout.show(content, "home");
                     homeCardLayout.show(homeContent, "editor");
                     controlPanel.setButtonsEnabled(true);
-                    imagePreviewPanel.displayImage(creator.getTemplate().getDisplayImage());
+                    var template = creator.getTemplate();
+                    var grid = template.getCellGrid();
+                    if (grid != null) imagePreviewPanel.displayGrid(grid);
+                    else imagePreviewPanel.displayPyramid(template.getDisplayPyramid());
                 }
                 case null, default -> {
                 }
@@ -111,4 +116,8 @@ public class CreatorFrame extends JFrame implements Observer {
     public ControlPanel getControlPanel() {
         return controlPanel;
     }
+
+    public ImagePreviewPanel getImagePreviewPanel() {
+        return imagePreviewPanel;
+    }
 }
@@ -0,0 +1,166 @@
+package artcreator.gui.components;
+
+import artcreator.domain.CellGrid;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+import java.io.Serial;
+
+// Paints a CellGrid straight from its one-pixel-per-cell image with nearest-neighbour scaling,
+// so memory follows the number of cells and only cells inside the clip are drawn. The wheel
+// zooms around the cursor, dragging pans and a double click fits the grid again.
+public class CellGridView extends JComponent {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private static final double ZOOM_STEP = 1.25;
+    // Zooming stops once a cell covers this many screen pixels
+    private static final int MAX_CELL_PIXELS = 64;
+
+    private transient CellGrid grid;
+    private transient BufferedImage cells;
+    private double zoom = 1;
+    private double panX;
+    private double panY;
+
+    public CellGridView() {
+        setOpaque(false);
+        var mouse = new MouseAdapter() {
+            private Point last;
+
+            @Override
+            public void mousePressed(MouseEvent e) {
+                last = e.getPoint();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (last == null) return;
+                panX += e.getX() - last.x;
+                panY += e.getY() - last.y;
+                last = e.getPoint();
+                clampPan();
+                repaint();
+            }
+
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) resetView();
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                zoomAt(e.getX(), e.getY(), Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation()));
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        addMouseWheelListener(mouse);
+    }
+
+    // Zoom and pan are kept while the grid keeps its layout, e.g. across Live applies.
+    public void setGrid(CellGrid grid) {
+        var sameLayout = this.grid != null && grid != null
+                && grid.getWidth() == this.grid.getWidth() && grid.getHeight() == this.grid.getHeight()
+                && grid.getImageWidth() == this.grid.getImageWidth() && grid.getImageHeight() == this.grid.getImageHeight();
+        this.grid = grid;
+        this.cells = grid != null ? grid.toCellImage() : null;
+        if (sameLayout) repaint();
+        else resetView();
+    }
+
+    public void resetView() {
+        zoom = 1;
+        panX = 0;
+        panY = 0;
+        repaint();
+    }
+
+    private void zoomAt(int x, int y, double factor) {
+        if (grid == null) return;
+        var oldScale = scale();
+        var maxZoom = Math.max(1, MAX_CELL_PIXELS / (grid.getPixelSize() * fitScale()));
+        zoom = Math.clamp(zoom * factor, 1, maxZoom);
+        // Keep the image point under the cursor where it is
+        var imageX = (x - originX(oldScale)) / oldScale;
+        var imageY = (y - originY(oldScale)) / oldScale;
+        var newScale = scale();
+        panX = x - imageX * newScale - (getWidth() - grid.getImageWidth() * newScale) / 2;
+        panY = y - imageY * newScale - (getHeight() - grid.getImageHeight() * newScale) / 2;
+        clampPan();
+        repaint();
+    }
+
+    // A grid larger than the view may move until its edge reaches the view's; a smaller one stays centered
+    private void clampPan() {
+        var scale = scale();
+        var maxX = Math.max(0, (grid.getImageWidth() * scale - getWidth()) / 2);
+        var maxY = Math.max(0, (grid.getImageHeight() * scale - getHeight()) / 2);
+        panX = Math.clamp(panX, -maxX, maxX);
+        panY = Math.clamp(panY, -maxY, maxY);
+    }
+
+    private double fitScale() {
+        return Math.min((double) getWidth() / grid.getImageWidth(), (double) getHeight() / grid.getImageHeight());
+    }
+
+    // Screen pixels per source image pixel
+    private double scale() {
+        return fitScale() * zoom;
+    }
+
+    private double originX(double scale) {
+        return (getWidth() - grid.getImageWidth() * scale) / 2 + panX;
+    }
+
+    private double originY(double scale) {
+        return (getHeight() - grid.getImageHeight() * scale) / 2 + panY;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        if (grid == null || getWidth() <= 0 || getHeight() <= 0) return;
+        var g2 = (Graphics2D) g.create();
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+
+        var scale = scale();
+        var originX = originX(scale);
+        var originY = originY(scale);
+        var cellSize = grid.getPixelSize() * scale;
+        var clip = g2.getClipBounds();
+        if (clip == null) clip = new Rectangle(getWidth(), getHeight());
+
+        // Visible cell range
+        var col0 = Math.max(0, (int) Math.floor((clip.x - originX) / cellSize));
+        var row0 = Math.max(0, (int) Math.floor((clip.y - originY) / cellSize));
+        var col1 = Math.min(grid.getWidth(), (int) Math.ceil((clip.x + clip.width - originX) / cellSize));
+        var row1 = Math.min(grid.getHeight(), (int) Math.ceil((clip.y + clip.height - originY) / cellSize));
+
+        // Partial edge cells are narrower than the rest, so full and edge cells are drawn apart
+        var fullCols = grid.getImageWidth() / grid.getPixelSize();
+        var fullRows = grid.getImageHeight() / grid.getPixelSize();
+        for (var xs : new int[][] {{col0, Math.min(col1, fullCols)}, {Math.max(col0, fullCols), col1}}) {
+            if (xs[0] >= xs[1]) continue;
+            for (var ys : new int[][] {{row0, Math.min(row1, fullRows)}, {Math.max(row0, fullRows), row1}}) {
+                if (ys[0] >= ys[1]) continue;
+                g2.drawImage(cells,
+                        screenX(xs[0], originX, scale), screenY(ys[0], originY, scale),
+                        screenX(xs[1], originX, scale), screenY(ys[1], originY, scale),
+                        xs[0], ys[0], xs[1], ys[1], null);
+            }
+        }
+        g2.dispose();
+    }
+
+    private int screenX(int col, double originX, double scale) {
+        return (int) Math.round(originX + Math.min(col * grid.getPixelSize(), grid.getImageWidth()) * scale);
+    }
+
+    private int screenY(int row, double originY, double scale) {
+        return (int) Math.round(originY + Math.min(row * grid.getPixelSize(), grid.getImageHeight()) * scale);
+    }
+}
@@ -8,6 +8,8 @@ import javax.swing.*;
 import java.awt.*;
 
 public class ControlPanel {
+    private static final int PREVIEW_DELAY_MS = 120;
+
     private final JPanel panel;
     private final JSlider pixelSizeSlider;
     private final JLabel pixelSizeLabel;
@@ -16,8 +18,12 @@ public class ControlPanel {
     private final JComboBox<OutputSize> outputSizeCombo;
     private final JButton applyButton;
     private final JButton pdfButton;
+    private final JCheckBox liveCheck;
+    // Restarted while the slider is dragged, so a preview is only requested once it rests briefly.
+    // The full Apply runs once the slider is released.
+    private final Timer previewTimer;
 
-    public ControlPanel(Runnable onLoad, Runnable onApply, Runnable onGeneratePDF) {
+    public ControlPanel(Runnable onLoad, Runnable onApply, Runnable onGeneratePDF, Runnable onPreview) {
         panel = new JPanel();
         panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
         panel.setBackground(UIConfig.BG_PRIMARY);
@@ -34,7 +40,6 @@ public class ControlPanel {
         pixelSizeLabel = new JLabel("10");
         pixelSizeLabel.setFont(UIConfig.FONT_BOLD);
         pixelSizeLabel.setForeground(UIConfig.TEXT_PRIMARY);
-        pixelSizeSlider.addChangeListener(_ -> pixelSizeLabel.setText(String.valueOf(pixelSizeSlider.getValue())));
         row1.add(pixelSizeLabel);
 
         row1.add(createLabel("Colors:"));
@@ -42,6 +47,32 @@ public class ControlPanel {
         colorCountCombo.setSelectedItem(16);
         row1.add(colorCountCombo);
 
+        liveCheck = UIConfig.handCursor(new JCheckBox("Live"));
+        liveCheck.setOpaque(false);
+        liveCheck.setForeground(UIConfig.TEXT_SECONDARY);
+        liveCheck.setEnabled(false);
+        row1.add(liveCheck);
+
+        previewTimer = new Timer(PREVIEW_DELAY_MS, _ -> {
+            if (isLive()) onPreview.run();
+        });
+        previewTimer.setRepeats(false);
+        pixelSizeSlider.addChangeListener(_ -> {
+            pixelSizeLabel.setText(String.valueOf(pixelSizeSlider.getValue()));
+            if (pixelSizeSlider.getValueIsAdjusting()) {
+                previewTimer.restart();
+                return;
+            }
+            previewTimer.stop();
+            if (isLive()) onApply.run();
+        });
+        colorCountCombo.addActionListener(_ -> {
+            if (isLive()) onApply.run();
+        });
+        liveCheck.addActionListener(_ -> {
+            if (isLive()) onApply.run();
+        });
+
         // Row 2: Mode, Output, Actions
         var row2 = createRow();
 
@@ -88,11 +119,16 @@ public class ControlPanel {
         return slider;
     }
 
+    private boolean isLive() {
+        return liveCheck.isSelected() && liveCheck.isEnabled();
+    }
+
     public JPanel getPanel() { return panel; }
 
     public void setButtonsEnabled(boolean enabled) {
         applyButton.setEnabled(enabled);
         pdfButton.setEnabled(enabled);
+        liveCheck.setEnabled(enabled);
     }
 
     public void applyToConfig(ArtworkConfig config) {
@@ -1,5 +1,7 @@
 package artcreator.gui.components;
 
+import artcreator.domain.CellGrid;
+import artcreator.domain.ImagePyramid;
 import artcreator.gui.UIConfig;
 
 import javax.swing.*;
@@ -9,9 +11,15 @@ import java.awt.event.ComponentEvent;
 import java.awt.image.BufferedImage;
 
 public class ImagePreviewPanel {
+    // A drag fires resize events back to back; only the size it settles on is scaled
+    private static final int RESIZE_DELAY_MS = 60;
+
     private final JPanel container;
     private final JLabel imageLabel;
-    private BufferedImage currentImage;
+    private final CellGridView gridView = new CellGridView();
+    private final Timer resizeTimer;
+    private ImagePyramid currentPyramid;
+    private Dimension scaledFor;
 
     public ImagePreviewPanel() {
         container = new JPanel(new GridBagLayout());
@@ -23,32 +31,70 @@ public class ImagePreviewPanel {
         placeholder.setFont(UIConfig.FONT_LARGE);
         container.add(placeholder);
 
+        resizeTimer = new Timer(RESIZE_DELAY_MS, _ -> {
+            if (currentPyramid != null) rescale();
+        });
+        resizeTimer.setRepeats(false);
         container.addComponentListener(new ComponentAdapter() {
             @Override
             public void componentResized(ComponentEvent e) {
-                if (currentImage != null) rescale();
+                resizeTimer.restart();
             }
         });
     }
 
     public JPanel getPanel() { return container; }
 
+    // Pixelated results are drawn from their cells, without a full-size image behind them
+    public void displayGrid(CellGrid grid) {
+        if (grid == null) return;
+        currentPyramid = null;
+        gridView.setGrid(grid);
+        if (gridView.getParent() != container) {
+            container.removeAll();
+            var fill = new GridBagConstraints();
+            fill.fill = GridBagConstraints.BOTH;
+            fill.weightx = 1;
+            fill.weighty = 1;
+            container.add(gridView, fill);
+            container.revalidate();
+        }
+        container.repaint();
+    }
+
     public void displayImage(BufferedImage image) {
         if (image == null) return;
-        currentImage = image;
+        displayPyramid(ImagePyramid.of(image));
+    }
+
+    // Pyramids built ahead of time, e.g. on Template, keep the EDT to one small scaling step
+    public void displayPyramid(ImagePyramid pyramid) {
+        if (pyramid == null) return;
+        currentPyramid = pyramid;
+        scaledFor = null;
         rescale();
     }
 
+    // Space an image can take up without being scaled down
+    public Dimension getDisplaySize() {
+        return new Dimension(container.getWidth() - 20, container.getHeight() - 20);
+    }
+
     private void rescale() {
-        var w = container.getWidth() - 20;
-        var h = container.getHeight() - 20;
-        if (w <= 0 || h <= 0) return;
+        var size = getDisplaySize();
+        if (size.width <= 0 || size.height <= 0 || size.equals(scaledFor)) return;
 
-        var scaled = ImageUtils.scaleImage(currentImage, w, h);
+        var base = currentPyramid.getBase();
+        var scale = Math.min(1, Math.min((double) size.width / base.getWidth(), (double) size.height / base.getHeight()));
+        var level = currentPyramid.levelFor(size.width, size.height);
+        var scaled = ImageUtils.scaleImage(level, (int) (base.getWidth() * scale), (int) (base.getHeight() * scale));
         imageLabel.setIcon(new ImageIcon(scaled));
+        scaledFor = size;
 
-        container.removeAll();
-        container.add(imageLabel);
+        if (imageLabel.getParent() != container) {
+            container.removeAll();
+            container.add(imageLabel);
+        }
         container.revalidate();
         container.repaint();
     }
@@ -0,0 +1,102 @@
+package artcreator.creator.impl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.Random;
+
+class ColorQuantizerTest {
+
+    @Test
+    void singlePixelImageYieldsSinglePaletteEntry() {
+        var image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, new Color(10, 20, 30).getRGB());
+        Assertions.assertEquals(List.of(new Color(10, 20, 30)), ColorQuantizer.getPalette(image, 16));
+    }
+
+    @Test
+    void medianCutSplitsOnWidestChannelAndAveragesBuckets() {
+        var image = new BufferedImage(4, 1, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, new Color(0, 10, 0).getRGB());
+        image.setRGB(1, 0, new Color(200, 20, 0).getRGB());
+        image.setRGB(2, 0, new Color(10, 30, 0).getRGB());
+        image.setRGB(3, 0, new Color(250, 40, 0).getRGB());
+
+        var palette = ColorQuantizer.getPalette(image, 2);
+        Assertions.assertEquals(List.of(new Color(5, 20, 0), new Color(225, 30, 0)), palette);
+    }
+
+    @Test
+    void quantizeMapsEveryPixelToPalette() {
+        var image = new BufferedImage(8, 8, BufferedImage.TYPE_INT_ARGB);
+        for (var y = 0; y < 8; y++) {
+            for (var x = 0; x < 8; x++) {
+                image.setRGB(x, y, new Color(x * 30, y * 30, (x + y) * 15, 128).getRGB());
+            }
+        }
+        var palette = ColorQuantizer.getPalette(image, 8);
+        var quantized = ColorQuantizer.quantize(image, 8);
+        Assertions.assertEquals(8, palette.size());
+        for (var y = 0; y < 8; y++) {
+            for (var x = 0; x < 8; x++) {
+                Assertions.assertTrue(palette.contains(new Color(quantized.getRGB(x, y))));
+            }
+        }
+    }
+
+    @Test
+    void histogramCellsCountBeyondIntRange() {
+        // One gray cell standing for about 3.2 billion pixels, as in a huge mostly uniform source
+        var builder = new ColorHistogram.Builder(5);
+        var colors = new int[]{0x000000, 0x808080, 0xFFFFFF};
+        builder.add(colors, new int[]{1, Integer.MAX_VALUE / 2, 1}, 0, 3);
+        builder.add(colors, new int[]{0, Integer.MAX_VALUE / 2, 0}, 0, 3);
+        builder.add(colors, new int[]{0, Integer.MAX_VALUE / 2, 0}, 0, 3);
+        Assertions.assertArrayEquals(new int[]{0x000000, 0x808080}, builder.build().palette(2));
+    }
+
+    @Test
+    void histogramModeKeepsDistinctColorsExact() {
+        var image = new BufferedImage(6, 1, BufferedImage.TYPE_INT_RGB);
+        var colors = new Color[]{new Color(255, 0, 0), new Color(0, 255, 0), new Color(0, 0, 255)};
+        for (var x = 0; x < 6; x++) {
+            image.setRGB(x, 0, colors[x % 3].getRGB());
+        }
+        for (var bits : new int[]{5, 6}) {
+            var palette = ColorQuantizer.getPalette(image, 8, bits);
+            Assertions.assertEquals(3, palette.size());
+            for (var c : colors) {
+                Assertions.assertTrue(palette.contains(c));
+            }
+        }
+    }
+
+    @Test
+    void paletteIndexPicksFirstNearestEntry() {
+        var random = new Random(7);
+        var palette = new int[29];
+        for (var i = 0; i < palette.length; i++) palette[i] = random.nextInt() & 0xFFFFFF;
+        palette[17] = palette[3];
+
+        var index = new PaletteIndex(palette);
+        for (var n = 0; n < 5000; n++) {
+            var rgb = random.nextInt() & 0xFFFFFF;
+            var expected = 0;
+            for (var i = 1; i < palette.length; i++) {
+                if (distance(rgb, palette[i]) < distance(rgb, palette[expected])) expected = i;
+            }
+            Assertions.assertEquals(expected, index.indexOf(rgb));
+            Assertions.assertEquals(expected, index.indexOf(rgb));
+        }
+    }
+
+    private static int distance(int a, int b) {
+        var dr = ((a >> 16) & 0xFF) - ((b >> 16) & 0xFF);
+        var dg = ((a >> 8) & 0xFF) - ((b >> 8) & 0xFF);
+        var db = (a & 0xFF) - (b & 0xFF);
+        return dr * dr + dg * dg + db * db;
+    }
+}
@@ -0,0 +1,50 @@
+package artcreator.creator.impl;
+
+import artcreator.domain.ArtworkConfig;
+import artcreator.domain.CellGrid;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class GridCacheTest {
+
+    @Test
+    void repeatedConfigHitsAndModeDoesNotMatter() {
+        var cache = new GridCache(1 << 20);
+        var config = new ArtworkConfig();
+        var grid = grid(10, 10);
+        Assertions.assertNull(cache.get(GridCache.Key.of(7, config)));
+        cache.put(GridCache.Key.of(7, config), grid);
+
+        config.setMode3D(true);
+        Assertions.assertSame(grid, cache.get(GridCache.Key.of(7, config)));
+        Assertions.assertNull(cache.get(GridCache.Key.of(8, config)));
+        config.setPixelSize(20);
+        Assertions.assertNull(cache.get(GridCache.Key.of(7, config)));
+        Assertions.assertEquals(1, cache.hits());
+        Assertions.assertEquals(3, cache.misses());
+    }
+
+    @Test
+    void leastRecentlyUsedGridIsEvictedOverBudget() {
+        // Room for two 1000-cell grids, not three
+        var cache = new GridCache(2500);
+        var a = new GridCache.Key(1, 10, 16, 0);
+        var b = new GridCache.Key(2, 10, 16, 0);
+        var c = new GridCache.Key(3, 10, 16, 0);
+        cache.put(a, grid(40, 25));
+        cache.put(b, grid(40, 25));
+        Assertions.assertNotNull(cache.get(a));
+        cache.put(c, grid(40, 25));
+
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertNotNull(cache.get(a));
+        Assertions.assertNull(cache.get(b));
+        Assertions.assertNotNull(cache.get(c));
+        Assertions.assertTrue(cache.bytes() <= 2500);
+    }
+
+    private static CellGrid grid(int width, int height) {
+        return new CellGrid(width, height, 10, width * 10, height * 10, new int[] {0x000000, 0xFFFFFF},
+                new byte[width * height]);
+    }
+}
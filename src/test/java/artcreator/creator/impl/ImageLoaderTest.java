@@ -0,0 +1,95 @@
+package artcreator.creator.impl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+class ImageLoaderTest {
+
+    @Test
+    void subsamplingIsTheSmallestStepWithinBudget() {
+        Assertions.assertEquals(1, ImageLoader.subsampling(300, 200, 60_000));
+        Assertions.assertEquals(2, ImageLoader.subsampling(300, 200, 59_999));
+        Assertions.assertEquals(3, ImageLoader.subsampling(300, 200, 10_000));
+    }
+
+    @Test
+    void largeSourceIsSubsampledWhileDecoding() throws Exception {
+        var source = new BufferedImage(300, 200, BufferedImage.TYPE_INT_RGB);
+        for (var y = 0; y < 200; y++) {
+            for (var x = 0; x < 300; x++) source.setRGB(x, y, x << 16 | y << 8 | (x + y) & 0xFF);
+        }
+        var file = File.createTempFile("loader", ".png");
+        file.deleteOnExit();
+        ImageIO.write(source, "png", file);
+
+        var decoded = ImageLoader.load(file, 10_000);
+        var image = decoded.image();
+        Assertions.assertEquals(3, decoded.subsampling());
+        Assertions.assertEquals(100, image.getWidth());
+        Assertions.assertEquals(67, image.getHeight());
+        for (var y = 0; y < image.getHeight(); y++) {
+            for (var x = 0; x < image.getWidth(); x++) {
+                Assertions.assertEquals(source.getRGB(x * 3, y * 3), image.getRGB(x, y));
+            }
+        }
+
+        var full = ImageLoader.load(file, ImageLoader.MAX_PIXELS).image();
+        Assertions.assertEquals(300, full.getWidth());
+        Assertions.assertEquals(source.getRGB(299, 199), full.getRGB(299, 199));
+    }
+
+    @Test
+    void bandsMatchTheDecodedImageWithOrWithoutTheSequentialPass() throws Exception {
+        var source = new BufferedImage(61, 45, BufferedImage.TYPE_INT_RGB);
+        for (var y = 0; y < 45; y++) {
+            for (var x = 0; x < 61; x++) source.setRGB(x, y, x * 4 << 16 | y * 5 << 8 | (x * y) & 0xFF);
+        }
+        // Interlaced PNG, progressive JPEG and BMP have to fall back to region reads
+        for (var chunkPixels : new long[] {Integer.MAX_VALUE - 1, 61 * 14}) {
+            checkBands(source, "png", false, true, chunkPixels);
+            checkBands(source, "png", true, false, chunkPixels);
+            checkBands(source, "jpg", false, true, chunkPixels);
+            checkBands(source, "jpg", true, false, chunkPixels);
+            checkBands(source, "bmp", false, false, chunkPixels);
+        }
+    }
+
+    private static void checkBands(BufferedImage source, String format, boolean progressive,
+                                   boolean sequential, long chunkPixels) throws Exception {
+        var file = File.createTempFile("bands", "." + format);
+        file.deleteOnExit();
+        var writer = ImageIO.getImageWritersBySuffix(format).next();
+        try (var output = ImageIO.createImageOutputStream(file)) {
+            writer.setOutput(output);
+            var param = writer.getDefaultWriteParam();
+            if (progressive) param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            writer.write(null, new IIOImage(source, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        var expected = ImageIO.read(file);
+
+        try (var bands = ImageLoader.Bands.open(file)) {
+            var next = new int[1];
+            // Small chunks split the sequential pass into several reads of whole bands
+            bands.forEach(7, chunkPixels, (pixels, y0, rows) -> {
+                Assertions.assertEquals(next[0], y0);
+                Assertions.assertEquals(Math.min(7, 45 - y0), rows);
+                for (var y = 0; y < rows; y++) {
+                    for (var x = 0; x < 61; x++) {
+                        Assertions.assertEquals(expected.getRGB(x, y0 + y) & 0xFFFFFF, pixels[y * 61 + x] & 0xFFFFFF);
+                    }
+                }
+                next[0] += rows;
+            });
+            Assertions.assertEquals(45, next[0]);
+            Assertions.assertEquals(sequential, bands.sequential(), format + (progressive ? " progressive" : ""));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package artcreator.creator.impl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class JobsTest {
+
+    @Test
+    void cancelledJobIsSkippedBeforeItStarts() throws Exception {
+        var jobs = new Jobs();
+        var release = new CountDownLatch(1);
+        var blocker = jobs.edit(() -> release.await(5, TimeUnit.SECONDS));
+        var ran = new AtomicBoolean();
+        var cancelled = jobs.edit(() -> {
+            ran.set(true);
+            return null;
+        });
+        var next = jobs.edit(() -> "done");
+
+        cancelled.cancel(false);
+        release.countDown();
+
+        Assertions.assertTrue(blocker.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals("done", next.get(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(cancelled.isCancelled());
+        Assertions.assertFalse(ran.get());
+    }
+
+    @Test
+    void runningJobStopsAtNextTile() throws Exception {
+        var tiles = new Tiles(2);
+        var started = new CountDownLatch(1);
+        var proceed = new CountDownLatch(1);
+        var tilesRun = new AtomicInteger();
+        var jobs = new Jobs();
+        var job = jobs.edit(() -> {
+            tiles.forEach(1 << 10, 1, (from, to) -> {
+                tilesRun.incrementAndGet();
+                started.countDown();
+                try {
+                    proceed.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            return "finished";
+        });
+
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+        job.cancel(false);
+        proceed.countDown();
+
+        Assertions.assertThrows(CancellationException.class, () -> job.get(5, TimeUnit.SECONDS));
+        // The lane runs jobs in order, so this one starts after the cancelled job has returned
+        jobs.edit(() -> null).get(5, TimeUnit.SECONDS);
+        Assertions.assertTrue(tilesRun.get() <= tiles.parallelism());
+    }
+
+    @Test
+    void failureCompletesExceptionally() {
+        var jobs = new Jobs();
+        var job = jobs.export(() -> 21, input -> {
+            if (input == 21) throw new IllegalStateException("boom");
+            return input * 2;
+        });
+        var e = Assertions.assertThrows(ExecutionException.class, () -> job.get(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    void errorCompletesExceptionallyAndTheLaneGoesOn() throws Exception {
+        var jobs = new Jobs();
+        var job = jobs.edit(() -> {
+            throw new StackOverflowError("deep");
+        });
+        var e = Assertions.assertThrows(ExecutionException.class, () -> job.get(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(e.getCause() instanceof StackOverflowError);
+        Assertions.assertEquals("next", jobs.edit(() -> "next").get(5, TimeUnit.SECONDS));
+    }
+}
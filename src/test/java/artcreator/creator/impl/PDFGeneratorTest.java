@@ -0,0 +1,178 @@
+package artcreator.creator.impl;
+
+import artcreator.domain.ArtworkConfig;
+import artcreator.domain.CellGrid;
+import artcreator.domain.OutputSize;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.zip.Inflater;
+
+class PDFGeneratorTest {
+    private static final Pattern REFERENCE = Pattern.compile("(\\d+) 0 R");
+    private static final Pattern XOBJECT = Pattern.compile("/(\\w+) (\\d+) 0 R");
+    private static final Pattern DRAW = Pattern.compile("/(\\w+) Do");
+
+    @Test
+    void exportsAreWellFormedForEverySizeCompressionAndParallelism() throws Exception {
+        var grid = randomGrid(40, 30, 28);
+        var config = new ArtworkConfig();
+        for (var size : OutputSize.values()) {
+            config.setOutputSize(size);
+            for (var compress : new boolean[] {false, true}) {
+                for (var parallelism : new int[] {1, 4}) {
+                    var label = size + (compress ? " compressed" : " plain") + " x" + parallelism;
+                    var generator = new PDFGenerator(compress, false, parallelism);
+
+                    var file = File.createTempFile("export", ".pdf");
+                    file.deleteOnExit();
+                    generator.generate(grid, config, file);
+                    var bytes = Files.readAllBytes(file.toPath());
+                    check(bytes, gridPages(size), label);
+
+                    // The second export comes from the page cache and has to be the same document
+                    var stream = new ByteArrayOutputStream();
+                    generator.generate(grid, config, stream);
+                    Assertions.assertArrayEquals(bytes, stream.toByteArray(), label + " stream");
+
+                    var channelOut = new ByteArrayOutputStream();
+                    generator.generate(grid, config, Channels.newChannel(channelOut));
+                    Assertions.assertArrayEquals(bytes, channelOut.toByteArray(), label + " channel");
+                }
+            }
+        }
+    }
+
+    @Test
+    void cachedPagesOfAnotherGridAreNotReused() throws Exception {
+        var config = new ArtworkConfig();
+        config.setOutputSize(OutputSize.A3);
+        var first = randomGrid(40, 30, 28);
+        var second = new CellGrid(40, 30, 6, 240, 180, new int[] {0xFF0000, 0x00FF00}, new byte[40 * 30]);
+        var generator = new PDFGenerator(true, false, 4);
+        generator.generate(first, config, new ByteArrayOutputStream());
+
+        var cached = new ByteArrayOutputStream();
+        generator.generate(second, config, cached);
+        var fresh = new ByteArrayOutputStream();
+        new PDFGenerator(true, false, 4).generate(second, config, fresh);
+        Assertions.assertArrayEquals(fresh.toByteArray(), cached.toByteArray());
+        Assertions.assertNotEquals(first, second);
+    }
+
+    private static int gridPages(OutputSize size) {
+        if (size == OutputSize.A4) return 1;
+        return (int) Math.ceil(size.getWidthMM() / (double) OutputSize.A4.getWidthMM())
+                * (int) Math.ceil(size.getHeightMM() / (double) OutputSize.A4.getHeightMM());
+    }
+
+    private static void check(byte[] bytes, int gridPages, String label) throws Exception {
+        var pdf = new String(bytes, StandardCharsets.ISO_8859_1);
+
+        // Every xref entry points at the header of its own object
+        var startxref = pdf.lastIndexOf("startxref\n");
+        var xref = Integer.parseInt(pdf.substring(startxref + 10, pdf.indexOf('\n', startxref + 10)));
+        Assertions.assertTrue(pdf.startsWith("xref\n0 ", xref), label);
+        var headerEnd = pdf.indexOf('\n', xref + 5);
+        var size = Integer.parseInt(pdf.substring(xref + 7, headerEnd));
+        var objects = new HashMap<Integer, String>();
+        for (var id = 1; id < size; id++) {
+            var entry = headerEnd + 1 + id * 20;
+            var offset = Integer.parseInt(pdf.substring(entry, entry + 10));
+            var header = id + " 0 obj\n";
+            Assertions.assertTrue(pdf.startsWith(header, offset), label + " object " + id);
+            var body = offset + header.length();
+            objects.put(id, pdf.substring(body, pdf.indexOf("endobj\n", body)));
+        }
+
+        var streams = new HashMap<Integer, String>();
+        for (var object : objects.entrySet()) {
+            var body = object.getValue();
+            var start = body.indexOf(">>\nstream\n");
+            if (start < 0) continue;
+            start += 10;
+            var length = Pattern.compile("/Length (\\d+)( 0 R)?").matcher(body);
+            Assertions.assertTrue(length.find(), label);
+            var value = length.group(2) != null
+                    ? Integer.parseInt(objects.get(Integer.parseInt(length.group(1))).trim())
+                    : Integer.parseInt(length.group(1));
+            Assertions.assertTrue(body.startsWith("\nendstream\n", start + value), label + " /Length of " + object.getKey());
+            var data = body.substring(start, start + value).getBytes(StandardCharsets.ISO_8859_1);
+            streams.put(object.getKey(), body.contains("/FlateDecode") ? inflate(data, label) : new String(data, StandardCharsets.ISO_8859_1));
+        }
+
+        // Title page, instructions and the grid pages in reading order
+        var pages = objects.get(1);
+        var kids = new ArrayList<String>();
+        var matcher = REFERENCE.matcher(pages.substring(pages.indexOf("/Kids ["), pages.indexOf(']')));
+        while (matcher.find()) {
+            var page = objects.get(Integer.parseInt(matcher.group(1)));
+            Assertions.assertTrue(page.contains("/Type /Page "), label);
+            var contents = Pattern.compile("/Contents (\\d+) 0 R").matcher(page);
+            Assertions.assertTrue(contents.find(), label);
+            kids.add(streams.get(Integer.parseInt(contents.group(1))));
+        }
+        Assertions.assertEquals(gridPages + 2, kids.size(), label);
+        Assertions.assertTrue(pages.contains("/Count " + kids.size() + " "), label);
+        Assertions.assertTrue(kids.get(0).contains("Bauanleitung"), label);
+        Assertions.assertTrue(kids.get(1).contains("Materialliste"), label);
+        for (var page = 1; page <= gridPages; page++) {
+            Assertions.assertTrue(kids.get(page + 1).contains("Seite " + page + "/" + gridPages + ")"), label + " page " + page);
+        }
+
+        // Every XObject drawn is declared in the shared resources and exists
+        var declared = new HashSet<String>();
+        var xObjects = objects.get(4);
+        var entries = XOBJECT.matcher(xObjects.substring(xObjects.indexOf("/XObject <<")));
+        while (entries.find()) {
+            Assertions.assertTrue(objects.get(Integer.parseInt(entries.group(2))).contains("/Type /XObject"), label);
+            declared.add(entries.group(1));
+        }
+        var drawn = 0;
+        for (var content : kids) {
+            var draws = DRAW.matcher(content);
+            while (draws.find()) {
+                Assertions.assertTrue(declared.contains(draws.group(1)), label + " " + draws.group(1));
+                drawn++;
+            }
+        }
+        Assertions.assertTrue(drawn > 40 * 30, label);
+    }
+
+    private static String inflate(byte[] data, String label) throws Exception {
+        var inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            var out = new ByteArrayOutputStream();
+            var buffer = new byte[1 << 14];
+            while (!inflater.finished()) {
+                var n = inflater.inflate(buffer);
+                Assertions.assertFalse(n == 0 && (inflater.needsInput() || inflater.needsDictionary()), label + " truncated stream");
+                out.write(buffer, 0, n);
+            }
+            Assertions.assertEquals(0, inflater.getRemaining(), label);
+            return out.toString(StandardCharsets.ISO_8859_1);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static CellGrid randomGrid(int width, int height, int colors) {
+        var random = new Random(11);
+        var palette = new int[colors];
+        for (var i = 0; i < colors; i++) palette[i] = random.nextInt(0x1000000);
+        var indices = new byte[width * height];
+        for (var i = 0; i < indices.length; i++) indices[i] = (byte) random.nextInt(colors);
+        return new CellGrid(width, height, 5, width * 5, height * 5, palette, indices);
+    }
+}
@@ -0,0 +1,128 @@
+package artcreator.creator.impl;
+
+import artcreator.domain.ArtworkConfig;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+
+class PixelationEngineTest {
+
+    @Test
+    void cellGridCoversPartialEdgeCells() {
+        var config = new ArtworkConfig();
+        config.setPixelSize(4);
+        config.setColorCount(8);
+
+        var grid = new PixelationEngine().createCellGrid(randomImage(10, 7, BufferedImage.TYPE_INT_RGB), config);
+        Assertions.assertEquals(3, grid.getWidth());
+        Assertions.assertEquals(2, grid.getHeight());
+        Assertions.assertEquals(6, Arrays.stream(grid.countCells()).sum());
+    }
+
+    @Test
+    void cellGridExpandsToBlocksOfPaletteColors() {
+        var config = new ArtworkConfig();
+        config.setPixelSize(5);
+        config.setColorCount(8);
+        var image = randomImage(23, 17, BufferedImage.TYPE_INT_ARGB);
+
+        var engine = new PixelationEngine();
+        var grid = engine.createCellGrid(image, config);
+        var expanded = engine.pixelate(image, config);
+        for (var y = 0; y < image.getHeight(); y++) {
+            for (var x = 0; x < image.getWidth(); x++) {
+                Assertions.assertEquals(grid.getRGB(x / 5, y / 5), expanded.getRGB(x, y) & 0xFFFFFF);
+            }
+        }
+    }
+
+    @Test
+    void rasterLayoutDoesNotChangeResult() {
+        var image = randomImage(41, 29, BufferedImage.TYPE_INT_RGB);
+        var bgr = new BufferedImage(41, 29, BufferedImage.TYPE_3BYTE_BGR);
+        bgr.setRGB(0, 0, 41, 29, image.getRGB(0, 0, 41, 29, null, 0, 41), 0, 41);
+        var padded = randomImage(50, 40, BufferedImage.TYPE_INT_RGB);
+        padded.setRGB(3, 5, 41, 29, image.getRGB(0, 0, 41, 29, null, 0, 41), 0, 41);
+        var sub = padded.getSubimage(3, 5, 41, 29);
+
+        var engine = new PixelationEngine();
+        var expected = engine.pixelate(image, 6).getRGB(0, 0, 41, 29, null, 0, 41);
+        Assertions.assertArrayEquals(expected, engine.pixelate(bgr, 6).getRGB(0, 0, 41, 29, null, 0, 41));
+        Assertions.assertArrayEquals(expected, engine.pixelate(sub, 6).getRGB(0, 0, 41, 29, null, 0, 41));
+    }
+
+    @Test
+    void gridStreamedFromFileMatchesInMemoryGrid() throws Exception {
+        var image = randomImage(157, 93, BufferedImage.TYPE_INT_RGB);
+        var file = File.createTempFile("bands", ".png");
+        file.deleteOnExit();
+        ImageIO.write(image, "png", file);
+
+        var engine = new PixelationEngine();
+        var config = new ArtworkConfig();
+        config.setPixelSize(6);
+        for (var bits : new int[] {0, 5}) {
+            config.setHistogramBits(bits);
+            var expected = engine.createCellGrid(image, config);
+            // Three cell rows per band, so the last band holds the partial edge row
+            var streamed = engine.createCellGrid(file, config, 157 * 6 * 3);
+            Assertions.assertEquals(expected.contentHash(), streamed.contentHash());
+        }
+    }
+
+    @Test
+    void summedAreaTableMatchesDirectAveraging() {
+        var image = randomImage(157, 93, BufferedImage.TYPE_INT_ARGB);
+        var engine = new PixelationEngine();
+        var table = engine.buildSummedAreaTable(image);
+        var config = new ArtworkConfig();
+        for (var pixelSize : new int[]{2, 7, 10, 50}) {
+            config.setPixelSize(pixelSize);
+            var direct = engine.createCellGrid(image, config);
+            var cached = engine.createCellGrid(table, config);
+            for (var y = 0; y < direct.getHeight(); y++) {
+                for (var x = 0; x < direct.getWidth(); x++) {
+                    Assertions.assertEquals(direct.getRGB(x, y), cached.getRGB(x, y));
+                }
+            }
+            Assertions.assertArrayEquals(engine.pixelate(image, pixelSize).getRGB(0, 0, 157, 93, null, 0, 157),
+                    engine.pixelate(table, pixelSize).getRGB(0, 0, 157, 93, null, 0, 157));
+        }
+    }
+
+    @Test
+    void parallelTilesMatchSequentialResult() {
+        var image = randomImage(1201, 803, BufferedImage.TYPE_INT_RGB);
+        var sequential = new PixelationEngine(1);
+        var parallel = new PixelationEngine(4);
+        var config = new ArtworkConfig();
+        config.setPixelSize(3);
+        config.setColorCount(32);
+        for (var bits : new int[]{0, 5}) {
+            config.setHistogramBits(bits);
+            var expected = sequential.createCellGrid(image, config);
+            var actual = parallel.createCellGrid(image, config);
+            Assertions.assertArrayEquals(expected.countCells(), actual.countCells());
+            Assertions.assertArrayEquals(expected.toImage().getRGB(0, 0, 1201, 803, null, 0, 1201),
+                    actual.toImage().getRGB(0, 0, 1201, 803, null, 0, 1201));
+        }
+        Assertions.assertArrayEquals(sequential.pixelate(image, 4).getRGB(0, 0, 1201, 803, null, 0, 1201),
+                parallel.pixelate(image, 4).getRGB(0, 0, 1201, 803, null, 0, 1201));
+    }
+
+    static BufferedImage randomImage(int width, int height, int type) {
+        var random = new Random(width * 31L + height);
+        var image = new BufferedImage(width, height, type);
+        for (var y = 0; y < height; y++) {
+            for (var x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,52 @@
+package artcreator.creator.impl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+// Compares the kernels directly when the Vector API is available. The scalar surefire execution
+// runs every test without the module, so the engine's scalar paths are covered there.
+class SimdTest {
+
+    @Test
+    void vectorSumsMatchScalarSums() {
+        if (!Simd.ENABLED) return;
+        var random = new Random(3);
+        var pixels = new int[1000];
+        for (var i = 0; i < pixels.length; i++) pixels[i] = random.nextInt();
+        for (var length : new int[] {0, 1, 7, VectorKernels.lanes(), 3 * VectorKernels.lanes() + 5, 999}) {
+            var vector = new int[3][1];
+            var scalar = new int[3][1];
+            VectorKernels.sumChannels(pixels, 1, 1 + length, vector[0], vector[1], vector[2], 0);
+            ScalarKernels.sumChannels(pixels, 1, 1 + length, scalar[0], scalar[1], scalar[2], 0);
+            Assertions.assertArrayEquals(scalar[0], vector[0]);
+            Assertions.assertArrayEquals(scalar[1], vector[1]);
+            Assertions.assertArrayEquals(scalar[2], vector[2]);
+        }
+    }
+
+    @Test
+    void vectorNearestMatchesScalarNearest() {
+        if (!Simd.ENABLED) return;
+        var random = new Random(5);
+        for (var size : new int[] {1, 3, 8, 16, 17, 32}) {
+            var red = new int[size];
+            var green = new int[size];
+            var blue = new int[size];
+            for (var i = 0; i < size; i++) {
+                // Few distinct values, so ties between entries are common
+                red[i] = random.nextInt(4) * 64;
+                green[i] = random.nextInt(4) * 64;
+                blue[i] = random.nextInt(4) * 64;
+            }
+            for (var n = 0; n < 500; n++) {
+                var r = random.nextInt(256);
+                var g = random.nextInt(256);
+                var b = random.nextInt(256);
+                Assertions.assertEquals(ScalarKernels.nearest(red, green, blue, r, g, b),
+                        VectorKernels.nearest(red, green, blue, r, g, b));
+            }
+        }
+    }
+}